@@ -62,6 +62,14 @@ public class CustomArrayAdapter extends ArrayAdapter<ListItemObject> {
         mIdMap.put(mData.get(position), mCounter++);
     }
 
+    /**
+     * Forgets the stable id of an item that was removed from the data set, so that the id
+     * map does not keep growing with a bounded data set
+     */
+    public void removeStableIdForData(ListItemObject item) {
+        mIdMap.remove(item);
+    }
+
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
 
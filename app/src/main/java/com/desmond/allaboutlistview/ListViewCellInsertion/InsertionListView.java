@@ -11,6 +11,7 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
@@ -20,13 +21,16 @@ import android.view.View;
 import android.view.ViewTreeObserver;
 import android.view.animation.OvershootInterpolator;
 import android.widget.ImageView;
+import android.widget.ListAdapter;
 import android.widget.ListView;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
 import com.desmond.allaboutlistview.R;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -41,6 +45,7 @@ public class InsertionListView extends ListView {
 
     private static final int NEW_ROW_DURATION = 500;
     private static final int OVERSHOOT_INTERPOLATOR_TENSION = 5;
+    private static final int MAX_POOLED_BITMAPS = 2;
 
     private final OvershootInterpolator sOvershootInterpolator =
             new OvershootInterpolator(OVERSHOOT_INTERPOLATOR_TENSION);
@@ -51,6 +56,17 @@ public class InsertionListView extends ListView {
 
     private List<ListItemObject> mData;
     private List<BitmapDrawable> mCellBitmapDrawables;
+    private List<Bitmap> mBitmapPool;
+
+    private List<ListItemObject> mPendingRows;
+    private ArrayDeque<PendingInsertion> mPendingInsertions;
+    private boolean mIsAnimatingInsertion = false;
+
+    private boolean mBypassOffScreenInsertions = false;
+    private int mNewItemCount = 0;
+    private OnNewItemsListener mOnNewItemsListener;
+
+    private int mFeedCapacity = 0;
 
     public InsertionListView(Context context) {
         super(context);
@@ -73,37 +89,175 @@ public class InsertionListView extends ListView {
         // To contain screenshot drawable of the cells that were visible before the
         // data set change, but not after
         mCellBitmapDrawables = new ArrayList<BitmapDrawable>();
+
+        // To keep the screenshot bitmaps of the previous insertion for the next one
+        mBitmapPool = new ArrayList<Bitmap>();
+
+        // To collect the rows added while an insertion is being animated
+        mPendingRows = new ArrayList<ListItemObject>();
+        mPendingInsertions = new ArrayDeque<PendingInsertion>();
     }
 
     /**
-     * Modifies the underlying data set and adapter through the addition of the new object
-     * to the first item of the listView. The new cell is then animated into place from
-     * above the bounds of the ListView
+     * Adds the new object to the top of the listView. See addRows.
      */
     public void addRow(ListItemObject newObj) {
+        addRows(Collections.singletonList(newObj));
+    }
+
+    /**
+     * Adds the new objects to the top of the listView, one after the other, so that the
+     * last one ends up as the first item. If no insertion is being animated, the new cells
+     * are animated into place from above the bounds of the ListView right away. Otherwise
+     * they are queued, and the rows queued one after the other by the time the running
+     * animation ends are inserted with a single data set change, layout and animation.
+     */
+    public void addRows(List<ListItemObject> newObjs) {
+        if (mIsAnimatingInsertion) {
+            for (ListItemObject newObj : newObjs) {
+                mPendingInsertions.add(new PendingInsertion(0, newObj));
+            }
+            return;
+        }
+        mPendingRows.addAll(newObjs);
+        insertPendingRows();
+    }
+
+    /**
+     * Returns true while the insertion of a batch of rows is being animated. Rows added
+     * meanwhile are inserted once it ends.
+     */
+    public boolean isAnimatingInsertion() {
+        return mIsAnimatingInsertion;
+    }
+
+    /**
+     * Inserts the new object at position in the data set. If position lies within the cells
+     * currently on screen, only the cells below it are animated down to make room, and the
+     * new cell fades in. Otherwise only the data set is updated, and if the new item lies
+     * above the screen, the visible cells are kept in place. Position 0 is handled as by
+     * addRow. Calls made while an insertion is being animated are carried out once it ends,
+     * in order with the rows added meanwhile, with position interpreted against the data
+     * set at that time. In a bounded feed, an item inserted at or past the feed capacity
+     * would be evicted right away, so it is dropped.
+     */
+    public void insertAt(int position, ListItemObject newObj) {
+        if (position == 0) {
+            addRow(newObj);
+            return;
+        }
+        if (mIsAnimatingInsertion) {
+            mPendingInsertions.add(new PendingInsertion(position, newObj));
+            return;
+        }
+        if (mFeedCapacity > 0 && position >= mFeedCapacity) {
+            return;
+        }
+
         final CustomArrayAdapter adapter = (CustomArrayAdapter) getAdapter();
+        int firstVisiblePosition = getFirstVisiblePosition();
+        int lastVisiblePosition = firstVisiblePosition + getChildCount() - 1;
+        View lastChild = getChildAt(getChildCount() - 1);
+        boolean isOnScreen = position >= firstVisiblePosition && (position <= lastVisiblePosition
+                || (position == lastVisiblePosition + 1 && lastChild != null
+                        && lastChild.getBottom() < getHeight() - getPaddingBottom()));
+
+        if (!isOnScreen) {
+            View firstChild = getChildAt(0);
+            int firstTop = firstChild != null ? firstChild.getTop() : 0;
+
+            mData.add(position, newObj);
+            adapter.addStableIdforDataAtPosition(position);
+            evictOverflowingItems(adapter);
+            adapter.notifyDataSetChanged();
+
+            // The item that was first on screen moved down by one position. As for the rows
+            // added to the top, new items are only counted in bypass mode.
+            if (position < firstVisiblePosition) {
+                setSelectionFromTop(firstVisiblePosition + 1, firstTop);
+                if (mBypassOffScreenInsertions) {
+                    addToNewItemCount(1);
+                }
+            }
+            return;
+        }
+        mIsAnimatingInsertion = true;
 
-        // Stores the starting bounds and the corresponding bitmap drawables
-        // of every cell present in the ListView (screenshot) before the data set change takes place
+        // Only the cells below the new one move, by the height of the new row
+        final int shift = newObj.getHeight() + getDividerHeight();
         final HashMap<Long, Rect> listViewItemBounds = new HashMap<Long, Rect>();
         final HashMap<Long, BitmapDrawable> listViewItemDrawables =
                 new HashMap<Long, BitmapDrawable>();
+        captureCells(position - firstVisiblePosition, shift,
+                listViewItemBounds, listViewItemDrawables);
 
-        int firstVisiblePosition = getFirstVisiblePosition();
-        for (int i = 0; i < getChildCount(); i++) {
-            final View child = getChildAt(i);
-            int position = firstVisiblePosition + i;
-            long itemID = adapter.getItemId(position);
-            Rect startRect = new Rect(child.getLeft(), child.getTop(),
-                    child.getRight(), child.getBottom());
-            listViewItemBounds.put(itemID, startRect);
-            listViewItemDrawables.put(itemID, getBitmapDrawableFromView(child));
+        mData.add(position, newObj);
+        adapter.addStableIdforDataAtPosition(position);
+        final long newItemId = adapter.getItemId(position);
+        evictOverflowingItems(adapter);
+        adapter.notifyDataSetChanged();
+
+        final ViewTreeObserver observer = getViewTreeObserver();
+        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                observer.removeOnPreDrawListener(this);
+
+                ArrayList<Animator> animations = new ArrayList<Animator>();
+
+                // Fades in the new cell while the ones below it make room
+                int firstVisiblePosition = getFirstVisiblePosition();
+                for (int i = 0; i < getChildCount(); i++) {
+                    if (adapter.getItemId(firstVisiblePosition + i) == newItemId) {
+                        animations.add(ObjectAnimator.ofFloat(getChildAt(i), "alpha", 0.0f, 1.0f));
+                        break;
+                    }
+                }
+
+                addCellAnimations(animations, listViewItemBounds, listViewItemDrawables, shift, 0);
+                startInsertionAnimations(new AnimatorSet(), animations);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Modifies the underlying data set and adapter through the addition of the pending
+     * objects to the top of the listView, and animates every cell into its new place
+     */
+    private void insertPendingRows() {
+        if (mPendingRows.isEmpty()) {
+            return;
+        }
+
+        final CustomArrayAdapter adapter = (CustomArrayAdapter) getAdapter();
+
+        if (mBypassOffScreenInsertions && !isScrolledToTop()) {
+            insertPendingRowsOffScreen(adapter);
+            return;
+        }
+        mIsAnimatingInsertion = true;
+
+        // Every cell moves down by the combined height of the new rows
+        int newRowsHeight = 0;
+        for (ListItemObject newObj : mPendingRows) {
+            newRowsHeight += newObj.getHeight() + getDividerHeight();
         }
+        final int shift = newRowsHeight;
 
-        // Adds the new object to the data set, thereby modifying the adapter
-        // as wel as adding a stable ID for that specified object
-        mData.add(0, newObj);
-        adapter.addStableIdforDataAtPosition(0);
+        final HashMap<Long, Rect> listViewItemBounds = new HashMap<Long, Rect>();
+        final HashMap<Long, BitmapDrawable> listViewItemDrawables =
+                new HashMap<Long, BitmapDrawable>();
+        captureCells(0, shift, listViewItemBounds, listViewItemDrawables);
+
+        // Adds the new objects to the data set, thereby modifying the adapter
+        // as wel as adding a stable ID for every one of them
+        for (ListItemObject newObj : mPendingRows) {
+            mData.add(0, newObj);
+            adapter.addStableIdforDataAtPosition(0);
+        }
+        mPendingRows.clear();
+        evictOverflowingItems(adapter);
         adapter.notifyDataSetChanged();
 
         final ViewTreeObserver observer = getViewTreeObserver();
@@ -118,7 +272,6 @@ public class InsertionListView extends ListView {
                 final ImageView imgView = (ImageView) newCell.findViewById(R.id.image_view);
                 final ImageView copyImgView = new ImageView(getContext());
 
-                int firstVisiblePosition = getFirstVisiblePosition();
                 final boolean shouldAnimateInNewRow = shouldAnimateInNewRow();
                 final boolean shouldAnimateInImage = shouldAnimateInNewImage();
 
@@ -178,109 +331,20 @@ public class InsertionListView extends ListView {
                     }
                 }
 
-                // Loops through all the current visible cells in the ListView and animates all
-                // of them into their post layout positions from their original positions
-                for (int i = 0; i < getChildCount(); i++) {
-                    View child = getChildAt(i);
-                    int position = firstVisiblePosition + i;
-                    long itemId = adapter.getItemId(position);
-                    Rect startRect = listViewItemBounds.get(itemId);
-
-                    // getTop() of the new position
-                    int top = child.getTop();
-                    int delta;
-                    ObjectAnimator animation;
-                    if (startRect != null) {
-                        // If the cell was visible before the data set change and after
-                        // the change, then animate the cell between the two positions
-                        int startTop = startRect.top;
-                        delta = startTop - top;
-                    }
-                    else  {
-                        // If the cell was not visible (or present) before the data set
-                        // change but is visible after the change, then use its height
-                        // to determine the delta by which it should be animated
-                        int childHeight = child.getHeight() + getDividerHeight();
-                        // i == 0 will be animate from outside of screen
-                        int startTop = top + (i > 0 ? childHeight : -childHeight);
-                        delta = startTop - top;
-                    }
-                    animation = ObjectAnimator.ofFloat(child, "translationY", delta, 0);
-                    animations.add(animation);
+                // Cells that were not visible before the data set change come in from
+                // above along with the others
+                addCellAnimations(animations, listViewItemBounds, listViewItemDrawables,
+                        shift, -shift);
 
-                    // Items left will be those were visible before the data set changed, but
-                    // not after
-                    listViewItemBounds.remove(itemId);
-                    listViewItemDrawables.remove(itemId);
-                }
-
-                 // Loops through all the cells that were visible before the data set
-                 // changed but not after, and keeps track of their corresponding
-                 // drawables. The bounds of each drawable are then animated from the
-                 // original state to the new one (off the screen). By storing all
-                 // the drawables that meet this criteria, they can be redrawn on top
-                 // of the ListView via dispatchDraw as they are animating.
-                for (Long itemId : listViewItemBounds.keySet()) {
-                    // Screen shot drawable of the row
-                    BitmapDrawable bitmapDrawable = listViewItemDrawables.get(itemId);
-                    Rect startBounds = listViewItemBounds.get(itemId);
-                    // Position the drawable to the original position
-                    bitmapDrawable.setBounds(startBounds);
-
-                    int childHeight = startBounds.bottom - startBounds.top + getDividerHeight();
-                    // New position after animating down
-                    Rect endBounds = new Rect(startBounds);
-                    endBounds.offset(0, childHeight);
-
-                    ObjectAnimator animation = ObjectAnimator.ofObject(bitmapDrawable,
-                            "bounds", sBoundsEvaluator, startBounds, endBounds);
-                    animation.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                        private Rect mLastBound = null;
-                        private Rect mCurrentBound = new Rect();
-                        @Override
-                        public void onAnimationUpdate(ValueAnimator valueAnimator) {
-                            Rect bounds = (Rect)valueAnimator.getAnimatedValue();
-                            mCurrentBound.set(bounds);
-                            if (mLastBound != null) {
-                                mCurrentBound.union(mLastBound);
-                            }
-                            mLastBound = bounds;
-                            invalidate(mCurrentBound);
-                        }
-                    });
-
-                    listViewItemBounds.remove(itemId);
-                    listViewItemDrawables.remove(itemId);
-
-                    mCellBitmapDrawables.add(bitmapDrawable);
-
-                    animations.add(animation);
-                }
-
-                // Animate all the cells from their old position to their new position
-                // at the same time
-                setEnabled(false);
-                mRowAdditionAnimationListener.onRowAdditionAnimationStart();
                 AnimatorSet set = new AnimatorSet();
-                set.setDuration(NEW_ROW_DURATION);
-                set.playTogether(animations);
                 set.addListener(new AnimatorListenerAdapter() {
                     @Override
                     public void onAnimationEnd(Animator animation) {
-                        mCellBitmapDrawables.clear();
                         imgView.setVisibility(View.VISIBLE);
                         mLayout.removeView(copyImgView);
-                        mRowAdditionAnimationListener.onRowAdditionAnimationEnd();
-                        setEnabled(true);
-                        invalidate();
                     }
                 });
-
-                // Start all cells animations
-                set.start();
-
-                listViewItemBounds.clear();
-                listViewItemDrawables.clear();
+                startInsertionAnimations(set, animations);
 
                 // Return false to cancel all the current drawing pass
                 return true;
@@ -288,6 +352,245 @@ public class InsertionListView extends ListView {
         });
     }
 
+    /**
+     * Adds the pending objects above the visible cells without any animation or screenshot,
+     * and keeps the first visible item where it is on screen so that the content does not
+     * move under the user's finger
+     */
+    private void insertPendingRowsOffScreen(CustomArrayAdapter adapter) {
+        int firstVisiblePosition = getFirstVisiblePosition();
+        View firstChild = getChildAt(0);
+        int firstTop = firstChild != null ? firstChild.getTop() : 0;
+        int count = mPendingRows.size();
+
+        for (ListItemObject newObj : mPendingRows) {
+            mData.add(0, newObj);
+            adapter.addStableIdforDataAtPosition(0);
+        }
+        mPendingRows.clear();
+        evictOverflowingItems(adapter);
+        adapter.notifyDataSetChanged();
+
+        setSelectionFromTop(firstVisiblePosition + count, firstTop);
+        addToNewItemCount(count);
+    }
+
+    /**
+     * Returns true if the first item is entirely visible, i.e. new rows added to the top
+     * would be seen
+     */
+    private boolean isScrolledToTop() {
+        View firstChild = getChildAt(0);
+        return firstChild == null
+                || (getFirstVisiblePosition() == 0 && firstChild.getTop() >= getPaddingTop());
+    }
+
+    /**
+     * Drops the oldest items, at the tail of the data set, along with their stable ids
+     * until the data set is back within the feed capacity
+     */
+    private void evictOverflowingItems(CustomArrayAdapter adapter) {
+        if (mFeedCapacity <= 0) {
+            return;
+        }
+        while (mData.size() > mFeedCapacity) {
+            adapter.removeStableIdForData(mData.remove(mData.size() - 1));
+        }
+    }
+
+    private void addToNewItemCount(int count) {
+        mNewItemCount += count;
+        if (mOnNewItemsListener != null) {
+            mOnNewItemsListener.onNewItemCountChanged(mNewItemCount);
+        }
+    }
+
+    /**
+     * Resets the count of new items once the user has scrolled back to the top
+     */
+    @Override
+    protected void onScrollChanged(int l, int t, int oldl, int oldt) {
+        super.onScrollChanged(l, t, oldl, oldt);
+        if (mNewItemCount > 0 && isScrolledToTop()) {
+            mNewItemCount = 0;
+            if (mOnNewItemsListener != null) {
+                mOnNewItemsListener.onNewItemCountChanged(mNewItemCount);
+            }
+        }
+    }
+
+    /**
+     * Stores the starting bounds of every cell present in the ListView before the data set
+     * change takes place, and a screenshot of the cells from fromIndex on that will be
+     * pushed off the screen by moving down by shift. Only those are still drawn once the
+     * layout has taken place, so no other cell needs a bitmap.
+     */
+    private void captureCells(int fromIndex, int shift, HashMap<Long, Rect> listViewItemBounds,
+                              HashMap<Long, BitmapDrawable> listViewItemDrawables) {
+        ListAdapter adapter = getAdapter();
+        int firstVisiblePosition = getFirstVisiblePosition();
+        int bottomEdge = getHeight() - getPaddingBottom();
+        for (int i = 0; i < getChildCount(); i++) {
+            final View child = getChildAt(i);
+            int position = firstVisiblePosition + i;
+            long itemID = adapter.getItemId(position);
+            Rect startRect = new Rect(child.getLeft(), child.getTop(),
+                    child.getRight(), child.getBottom());
+            listViewItemBounds.put(itemID, startRect);
+            if (i >= fromIndex && child.getTop() + shift >= bottomEdge) {
+                listViewItemDrawables.put(itemID, getBitmapDrawableFromView(child));
+            }
+        }
+    }
+
+    /**
+     * Called once the layout following the data set change has taken place, with the cells
+     * captured by captureCells. Every cell whose position changed is animated from its
+     * original position, cells that were not visible before start enteringDelta above
+     * their new position, and the screenshots of the cells pushed off the screen are moved
+     * down by shift. Both maps are emptied.
+     */
+    private void addCellAnimations(List<Animator> animations,
+                                   HashMap<Long, Rect> listViewItemBounds,
+                                   HashMap<Long, BitmapDrawable> listViewItemDrawables,
+                                   int shift, int enteringDelta) {
+        ListAdapter adapter = getAdapter();
+        int firstVisiblePosition = getFirstVisiblePosition();
+
+        // Loops through all the current visible cells in the ListView and animates all
+        // of them into their post layout positions from their original positions
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            int position = firstVisiblePosition + i;
+            long itemId = adapter.getItemId(position);
+            Rect startRect = listViewItemBounds.get(itemId);
+
+            // getTop() of the new position
+            int top = child.getTop();
+            int delta;
+            if (startRect != null) {
+                // If the cell was visible before the data set change and after
+                // the change, then animate the cell between the two positions
+                int startTop = startRect.top;
+                delta = startTop - top;
+            }
+            else  {
+                delta = enteringDelta;
+            }
+            if (delta != 0) {
+                animations.add(ObjectAnimator.ofFloat(child, "translationY", delta, 0));
+            }
+
+            // Items left will be those were visible before the data set changed, but
+            // not after. A screenshot taken for a cell that is still visible is
+            // kept for the next insertion.
+            listViewItemBounds.remove(itemId);
+            releaseBitmapDrawable(listViewItemDrawables.remove(itemId));
+        }
+
+         // Loops through all the cells that were visible before the data set
+         // changed but not after, and keeps track of their corresponding
+         // drawables. The bounds of each drawable are then animated from the
+         // original state to the new one (off the screen). By storing all
+         // the drawables that meet this criteria, they can be redrawn on top
+         // of the ListView via dispatchDraw as they are animating.
+        for (Long itemId : listViewItemBounds.keySet()) {
+            // Screen shot drawable of the row, missing if the row was not expected
+            // to leave the screen
+            BitmapDrawable bitmapDrawable = listViewItemDrawables.remove(itemId);
+            if (bitmapDrawable == null) {
+                continue;
+            }
+            Rect startBounds = listViewItemBounds.get(itemId);
+            // Position the drawable to the original position
+            bitmapDrawable.setBounds(startBounds);
+
+            // New position after animating down
+            Rect endBounds = new Rect(startBounds);
+            endBounds.offset(0, shift);
+
+            ObjectAnimator animation = ObjectAnimator.ofObject(bitmapDrawable,
+                    "bounds", sBoundsEvaluator, startBounds, endBounds);
+            animation.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                private Rect mLastBound = null;
+                private Rect mCurrentBound = new Rect();
+                @Override
+                public void onAnimationUpdate(ValueAnimator valueAnimator) {
+                    Rect bounds = (Rect)valueAnimator.getAnimatedValue();
+                    mCurrentBound.set(bounds);
+                    if (mLastBound != null) {
+                        mCurrentBound.union(mLastBound);
+                    }
+                    mLastBound = bounds;
+                    invalidate(mCurrentBound);
+                }
+            });
+
+            mCellBitmapDrawables.add(bitmapDrawable);
+
+            animations.add(animation);
+        }
+
+        // Screenshots of rows that were expected to leave the screen but did not
+        for (BitmapDrawable bitmapDrawable : listViewItemDrawables.values()) {
+            releaseBitmapDrawable(bitmapDrawable);
+        }
+        listViewItemBounds.clear();
+        listViewItemDrawables.clear();
+    }
+
+    /**
+     * Animates all the cells from their old position to their new position at the same
+     * time. Once done, the screenshots are released and the insertions made in the
+     * meantime are carried out.
+     */
+    private void startInsertionAnimations(AnimatorSet set, List<Animator> animations) {
+        if (mRowAdditionAnimationListener != null) {
+            mRowAdditionAnimationListener.onRowAdditionAnimationStart();
+        }
+        set.setDuration(NEW_ROW_DURATION);
+        set.playTogether(animations);
+        set.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                for (BitmapDrawable bitmapDrawable : mCellBitmapDrawables) {
+                    releaseBitmapDrawable(bitmapDrawable);
+                }
+                mCellBitmapDrawables.clear();
+                mIsAnimatingInsertion = false;
+                if (mRowAdditionAnimationListener != null) {
+                    mRowAdditionAnimationListener.onRowAdditionAnimationEnd();
+                }
+                invalidate();
+
+                runPendingInsertions();
+            }
+        });
+
+        // Start all cells animations
+        set.start();
+    }
+
+    /**
+     * Carries out the rows added and the insertAt calls made while an insertion was being
+     * animated, in the order they were made, until one of them starts a new animation.
+     * Consecutive rows added to the top are inserted together as one batch.
+     */
+    private void runPendingInsertions() {
+        while (!mIsAnimatingInsertion && !mPendingInsertions.isEmpty()) {
+            while (!mPendingInsertions.isEmpty() && mPendingInsertions.peekFirst().mPosition == 0) {
+                mPendingRows.add(mPendingInsertions.pollFirst().mItem);
+            }
+            if (!mPendingRows.isEmpty()) {
+                insertPendingRows();
+            }
+            else {
+                PendingInsertion insertion = mPendingInsertions.pollFirst();
+                insertAt(insertion.mPosition, insertion.mItem);
+            }
+        }
+    }
+
     /**
      * By overriding dispatchDraw, the BitmapDrawables of all the cells that were on the
      * screen before (but not after) the layout are drawn and animated off the screen.
@@ -309,16 +612,45 @@ public class InsertionListView extends ListView {
     }
 
     /**
-     * Returns a bitmap drawable showing a screenshot of the view passed in.
+     * Returns a bitmap drawable showing a screenshot of the view passed in. A pooled bitmap
+     * of the right size is reused if there is one.
      */
     private BitmapDrawable getBitmapDrawableFromView(View v) {
-        Bitmap bitmap  = Bitmap.createBitmap(v.getWidth(), v.getHeight(), Bitmap.Config.ARGB_8888);
+        Bitmap bitmap = null;
+        for (int i = 0; i < mBitmapPool.size(); i++) {
+            Bitmap pooled = mBitmapPool.get(i);
+            if (pooled.getWidth() == v.getWidth() && pooled.getHeight() == v.getHeight()) {
+                bitmap = mBitmapPool.remove(i);
+                bitmap.eraseColor(Color.TRANSPARENT);
+                break;
+            }
+        }
+        if (bitmap == null) {
+            bitmap = Bitmap.createBitmap(v.getWidth(), v.getHeight(), Bitmap.Config.ARGB_8888);
+        }
         Canvas canvas = new Canvas(bitmap);
         // Redraw the view and its children to the canvas
         v.draw(canvas);
         return new BitmapDrawable(getResources(), bitmap);
     }
 
+    /**
+     * Returns the bitmap of a screenshot drawable to the pool, or recycles it if the pool
+     * is full
+     */
+    private void releaseBitmapDrawable(BitmapDrawable bitmapDrawable) {
+        if (bitmapDrawable == null) {
+            return;
+        }
+        Bitmap bitmap = bitmapDrawable.getBitmap();
+        if (mBitmapPool.size() < MAX_POOLED_BITMAPS) {
+            mBitmapPool.add(bitmap);
+        }
+        else {
+            bitmap.recycle();
+        }
+    }
+
     /**
      * Animate the row if new row is visible in the listView
      * @return
@@ -371,11 +703,73 @@ public class InsertionListView extends ListView {
         mLayout = layout;
     }
 
+    /**
+     * If set, rows added to the top while the user is scrolled away from it are inserted
+     * without any animation or screenshot, the visible cells stay where they are, and the
+     * rows are counted as new items until the user scrolls back to the top. Rows added while
+     * at the top are animated in as usual.
+     */
+    public void setBypassOffScreenInsertions(boolean bypassOffScreenInsertions) {
+        mBypassOffScreenInsertions = bypassOffScreenInsertions;
+    }
+
+    public boolean isBypassingOffScreenInsertions() {
+        return mBypassOffScreenInsertions;
+    }
+
+    /**
+     * Bounds the number of items kept by the ListView. Once the data set holds more than
+     * feedCapacity items, the oldest ones, at the bottom, are dropped on every insertion.
+     * Backing the ListView with a RingBufferList makes both the insertion at the top and
+     * the eviction at the bottom constant time operations. A capacity of 0 or less keeps
+     * every item.
+     */
+    public void setFeedCapacity(int feedCapacity) {
+        mFeedCapacity = feedCapacity;
+
+        CustomArrayAdapter adapter = (CustomArrayAdapter) getAdapter();
+        if (adapter != null && mData != null && feedCapacity > 0
+                && mData.size() > feedCapacity) {
+            evictOverflowingItems(adapter);
+            adapter.notifyDataSetChanged();
+        }
+    }
+
+    public int getFeedCapacity() {
+        return mFeedCapacity;
+    }
+
+    /**
+     * Returns the number of rows inserted above the visible cells since the user last was
+     * at the top of the list
+     */
+    public int getNewItemCount() {
+        return mNewItemCount;
+    }
+
+    public void setOnNewItemsListener(OnNewItemsListener onNewItemsListener) {
+        mOnNewItemsListener = onNewItemsListener;
+    }
+
     public void setRowAdditionAnimationListener(OnRowAdditionAnimationListener
                                                         rowAdditionAnimationListener) {
         mRowAdditionAnimationListener = rowAdditionAnimationListener;
     }
 
+    /**
+     * A row added or an insertAt call made while an insertion was being animated. Rows
+     * added to the top have position 0.
+     */
+    private static class PendingInsertion {
+        final int mPosition;
+        final ListItemObject mItem;
+
+        PendingInsertion(int position, ListItemObject item) {
+            mPosition = position;
+            mItem = item;
+        }
+    }
+
     /**
      * This TypeEvaluator is used to animate the position of a BitmapDrawable
      * by updating its bounds.
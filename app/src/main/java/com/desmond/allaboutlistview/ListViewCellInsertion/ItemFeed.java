@@ -0,0 +1,111 @@
+package com.desmond.allaboutlistview.ListViewCellInsertion;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded feed of items handed from producer threads to a single consumer on the main
+ * thread, e.g. a TimeOrderedMerger feeding an InsertionListView.
+ *
+ * Producers call offer from any thread without taking a lock. Rather than posting a
+ * message per item, the consumer is only notified when the first item arrives after it
+ * last drained the feed, so the main thread message queue never grows with the producers.
+ * The consumer then drains items at its own pace. Once capacity items are waiting, offer
+ * refuses further items and the feed is saturated; the demand listener is notified from
+ * the consumer's thread once the waiting items dropped to half the capacity again.
+ */
+public class ItemFeed<T> {
+
+    private final ConcurrentLinkedQueue<T> mQueue = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger mSize = new AtomicInteger();
+    private final AtomicBoolean mIsSaturated = new AtomicBoolean();
+    private final AtomicBoolean mIsConsumerNotified = new AtomicBoolean();
+    private final int mCapacity;
+
+    private volatile OnItemsAvailableListener mOnItemsAvailableListener;
+    private volatile OnFeedDemandListener mOnFeedDemandListener;
+
+    public ItemFeed(int capacity) {
+        mCapacity = capacity;
+    }
+
+    /**
+     * Adds the item to the feed, from any thread. Returns false if the feed is saturated,
+     * in which case the item was not added and the producer should hold back until it is
+     * notified of new demand.
+     */
+    public boolean offer(T item) {
+        while (mSize.incrementAndGet() > mCapacity) {
+            // The flag is set before the slot is given back, so a drain that frees room
+            // after this point sees it and notifies the demand listener
+            mIsSaturated.set(true);
+            int size = mSize.decrementAndGet();
+
+            // A drain that completed in between missed the flag. The room it freed is
+            // taken right away, as nothing would notify the producer of it otherwise.
+            if (size > mCapacity / 2 || !mIsSaturated.compareAndSet(true, false)) {
+                return false;
+            }
+        }
+        mQueue.offer(item);
+
+        OnItemsAvailableListener listener = mOnItemsAvailableListener;
+        if (listener != null && mIsConsumerNotified.compareAndSet(false, true)) {
+            listener.onItemsAvailable();
+        }
+        return true;
+    }
+
+    /**
+     * Moves up to maxItems waiting items, oldest first, to out. Called by the consumer,
+     * which is notified again by the next offer once this has been called.
+     *
+     * @return the number of items moved
+     */
+    public int drain(List<T> out, int maxItems) {
+        mIsConsumerNotified.set(false);
+
+        int count = 0;
+        T item;
+        while (count < maxItems && (item = mQueue.poll()) != null) {
+            out.add(item);
+            count++;
+        }
+        int size = mSize.addAndGet(-count);
+
+        if (size <= mCapacity / 2 && mIsSaturated.compareAndSet(true, false)) {
+            OnFeedDemandListener listener = mOnFeedDemandListener;
+            if (listener != null) {
+                listener.onDemand();
+            }
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return mQueue.isEmpty();
+    }
+
+    public boolean isSaturated() {
+        return mIsSaturated.get();
+    }
+
+    /**
+     * Sets the consumer's listener. It may be called on any producer thread, and is
+     * expected to schedule a drain on the consumer's thread.
+     */
+    public void setOnItemsAvailableListener(OnItemsAvailableListener listener) {
+        mOnItemsAvailableListener = listener;
+        mIsConsumerNotified.set(false);
+        if (listener != null && !mQueue.isEmpty()
+                && mIsConsumerNotified.compareAndSet(false, true)) {
+            listener.onItemsAvailable();
+        }
+    }
+
+    public void setOnFeedDemandListener(OnFeedDemandListener listener) {
+        mOnFeedDemandListener = listener;
+    }
+}
@@ -2,18 +2,25 @@ package com.desmond.allaboutlistview.ListViewCellInsertion;
 
 /**
  * The data model for every cell in the ListView for this application. This model stores
- * a title, an image resource and a default cell height for every item in the ListView.
+ * a title, an image resource, a default cell height and the time the item was created for
+ * every item in the ListView.
  */
 public class ListItemObject {
 
     private String mTitle;
     private int mImgResource;
     private int mHeight;
+    private long mTimestamp;
 
     public ListItemObject(String title, int imgResource, int height) {
+        this(title, imgResource, height, System.currentTimeMillis());
+    }
+
+    public ListItemObject(String title, int imgResource, int height, long timestamp) {
         mTitle = title;
         mImgResource = imgResource;
         mHeight = height;
+        mTimestamp = timestamp;
     }
 
     public String getTitle() {
@@ -27,4 +34,8 @@ public class ListItemObject {
     public int getHeight() {
         return mHeight;
     }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
 }
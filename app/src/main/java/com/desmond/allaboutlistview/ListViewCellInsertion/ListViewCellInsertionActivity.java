@@ -6,12 +6,10 @@ import android.animation.ObjectAnimator;
 import android.os.Bundle;
 import android.support.v7.app.ActionBarActivity;
 import android.view.View;
-import android.widget.Button;
 import android.widget.RelativeLayout;
 
 import com.desmond.allaboutlistview.R;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -22,21 +20,34 @@ import java.util.List;
  * out of the round view and pops into the correct position in the top cell.
  */
 
-public class ListViewCellInsertionActivity extends ActionBarActivity
-        implements OnRowAdditionAnimationListener {
+public class ListViewCellInsertionActivity extends ActionBarActivity {
 
     private ListItemObject mValues[];
 
     private InsertionListView mListView;
 
-    private Button mButton;
-
     private Integer mItemNum = 0;
 
     private RoundView mRoundView;
 
     private int mCellHeight;
 
+    private final int FEED_CAPACITY = 200;
+    private final int FEED_QUEUE_CAPACITY = 32;
+    private final int FEED_INTERVAL = 200;
+    private final int DELAYED_FEED_INTERVAL = 700;
+    private final int DELAYED_FEED_LAG = 1000;
+
+    private final ItemFeed<ListItemObject> mFeed =
+            new ItemFeed<ListItemObject>(FEED_QUEUE_CAPACITY);
+    private final ItemFeed<ListItemObject> mDelayedFeed =
+            new ItemFeed<ListItemObject>(FEED_QUEUE_CAPACITY);
+
+    private TimeOrderedMerger mMerger;
+
+    private Thread mProducerThread;
+    private Thread mDelayedProducerThread;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -50,23 +61,122 @@ public class ListViewCellInsertionActivity extends ActionBarActivity
 
         mCellHeight = (int)(getResources().getDimension(R.dimen.cell_height));
 
-        List<ListItemObject> mData = new ArrayList<ListItemObject>();
+        // New rows are added to the top and the oldest ones dropped from the bottom, both of
+        // which are constant time operations on a ring buffer
+        List<ListItemObject> mData = new RingBufferList<ListItemObject>(FEED_CAPACITY + 1);
         CustomArrayAdapter mAdapter = new CustomArrayAdapter(this, R.layout.list_view_item, mData);
         RelativeLayout layout = (RelativeLayout)findViewById(R.id.relative_layout);
 
         mRoundView = (RoundView)findViewById(R.id.round_view);
-        mButton = (Button)findViewById(R.id.add_row_button);
         mListView = (InsertionListView) findViewById(R.id.insertion_listview);
 
         mListView.setAdapter(mAdapter);
         mListView.setData(mData);
         mListView.setLayout(layout);
-        mListView.setRowAdditionAnimationListener(this);
+        mListView.setFeedCapacity(FEED_CAPACITY);
+
+        // Rows also stream in from two background producers, and are merged into the list
+        // in the order they were created. The rows of the delayed producer reach the list
+        // after newer rows of the other one, and are inserted below them. A producer waits
+        // whenever its feed is saturated, and is woken up once the ListView has caught up.
+        mMerger = new TimeOrderedMerger(mListView, mData);
+        mMerger.addSource(mFeed);
+        mMerger.addSource(mDelayedFeed);
+        wakeProducerOnDemand(mFeed);
+        wakeProducerOnDemand(mDelayedFeed);
+
+        // Rows added while scrolled away from the top are not animated, and are counted
+        // in the action bar instead until the top is reached again
+        mListView.setBypassOffScreenInsertions(true);
+        mListView.setOnNewItemsListener(new OnNewItemsListener() {
+            @Override
+            public void onNewItemCountChanged(int newItemCount) {
+                getSupportActionBar().setSubtitle(newItemCount > 0
+                        ? getString(R.string.new_items, newItemCount) : null);
+            }
+        });
     }
 
-    public void addRow(View view) {
-        mButton.setEnabled(false);
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mProducerThread = new Thread(new FeedProducer(mFeed, FEED_INTERVAL, 0));
+        mProducerThread.start();
+        mDelayedProducerThread = new Thread(
+                new FeedProducer(mDelayedFeed, DELAYED_FEED_INTERVAL, DELAYED_FEED_LAG));
+        mDelayedProducerThread.start();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mProducerThread.interrupt();
+        mProducerThread = null;
+        mDelayedProducerThread.interrupt();
+        mDelayedProducerThread = null;
+    }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mMerger.release();
+    }
+
+    private void wakeProducerOnDemand(final ItemFeed<ListItemObject> feed) {
+        feed.setOnFeedDemandListener(new OnFeedDemandListener() {
+            @Override
+            public void onDemand() {
+                synchronized (feed) {
+                    feed.notifyAll();
+                }
+            }
+        });
+    }
+
+    /**
+     * Offers a new row to its feed every interval ms on a background thread, until
+     * interrupted. The rows are stamped lag ms before they are offered, as if they had
+     * been held up on their way.
+     */
+    private class FeedProducer implements Runnable {
+
+        private final ItemFeed<ListItemObject> mFeed;
+        private final int mInterval;
+        private final int mLag;
+
+        FeedProducer(ItemFeed<ListItemObject> feed, int interval, int lag) {
+            mFeed = feed;
+            mInterval = interval;
+            mLag = lag;
+        }
+
+        @Override
+        public void run() {
+            int itemNum = 0;
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(mInterval);
+
+                    ListItemObject obj = mValues[itemNum++ % mValues.length];
+                    ListItemObject newObj = new ListItemObject(obj.getTitle(),
+                            obj.getImgResource(), mCellHeight, System.currentTimeMillis() - mLag);
+                    synchronized (mFeed) {
+                        while (!mFeed.offer(newObj)) {
+                            mFeed.wait();
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Stopped by onPause
+            }
+        }
+    }
+
+    /**
+     * Rows added while the previous ones are still being animated in are queued by the
+     * ListView and inserted together, so the button is never disabled
+     */
+    public void addRow(View view) {
         mItemNum++;
         ListItemObject obj = mValues[mItemNum % mValues.length];
         final ListItemObject newObj = new ListItemObject(obj.getTitle(), obj.getImgResource(),
@@ -74,13 +184,12 @@ public class ListViewCellInsertionActivity extends ActionBarActivity
 
         boolean shouldAnimateInNewImage = mListView.shouldAnimateInNewImage();
         // Should not animate new row
-        if (!shouldAnimateInNewImage) {
+        if (!shouldAnimateInNewImage || mListView.isAnimatingInsertion()) {
             mListView.addRow(newObj);
             return;
         }
 
         // Should animate new row
-        mListView.setEnabled(false);
         ObjectAnimator animator = mRoundView.getScalingAnimator();
         animator.addListener(new AnimatorListenerAdapter() {
             @Override
@@ -90,14 +199,4 @@ public class ListViewCellInsertionActivity extends ActionBarActivity
         });
         animator.start();
     }
-
-    @Override
-    public void onRowAdditionAnimationStart() {
-        mButton.setEnabled(false);
-    }
-
-    @Override
-    public void onRowAdditionAnimationEnd() {
-        mButton.setEnabled(true);
-    }
 }
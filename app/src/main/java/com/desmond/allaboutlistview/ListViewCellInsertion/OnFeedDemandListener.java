@@ -0,0 +1,10 @@
+package com.desmond.allaboutlistview.ListViewCellInsertion;
+
+/**
+ * This listener is notified by an ItemFeed once it can take items again after it was
+ * saturated. It is called on the consumer's thread, so a producer waiting on another
+ * thread should be woken up from it.
+ */
+public interface OnFeedDemandListener {
+    public void onDemand();
+}
@@ -0,0 +1,10 @@
+package com.desmond.allaboutlistview.ListViewCellInsertion;
+
+/**
+ * This listener is notified by an ItemFeed when items arrive while its consumer has no
+ * drain pending. It is called on the producer's thread, so it should only schedule the
+ * drain on the consumer's own thread.
+ */
+public interface OnItemsAvailableListener {
+    public void onItemsAvailable();
+}
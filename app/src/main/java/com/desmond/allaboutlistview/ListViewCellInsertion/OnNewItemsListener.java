@@ -0,0 +1,11 @@
+package com.desmond.allaboutlistview.ListViewCellInsertion;
+
+/**
+ * This listener is notified whenever the number of rows inserted above the visible part
+ * of the InsertionListView changes, i.e. when rows are inserted without animation while
+ * the user is scrolled away from the top, and when the count is reset because the user
+ * scrolled back to the top. It can be used to show an "N new items" indicator.
+ */
+public interface OnNewItemsListener {
+    public void onNewItemCountChanged(int newItemCount);
+}
@@ -0,0 +1,124 @@
+package com.desmond.allaboutlistview.ListViewCellInsertion;
+
+import java.util.AbstractList;
+
+/**
+ * A list backed by a circular array. Adding or removing at either end takes constant
+ * time, as no element has to be shifted, which makes it a good fit for a feed where new
+ * items are inserted at the head and the oldest ones are dropped from the tail. Insertions
+ * and removals anywhere else shift the elements on the shorter side of the index. The
+ * array only grows when the list is full, so a list kept at a bounded size never
+ * allocates after it has reached that size.
+ */
+public class RingBufferList<E> extends AbstractList<E> {
+
+    private Object[] mElements;
+    private int mHead = 0;
+    private int mSize = 0;
+
+    public RingBufferList(int initialCapacity) {
+        mElements = new Object[Math.max(initialCapacity, 1)];
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index, mSize);
+        return (E) mElements[physicalIndex(index)];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E set(int index, E element) {
+        checkIndex(index, mSize);
+        int i = physicalIndex(index);
+        E previous = (E) mElements[i];
+        mElements[i] = element;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        checkIndex(index, mSize + 1);
+        if (mSize == mElements.length) {
+            grow();
+        }
+
+        if (index < mSize / 2) {
+            // Moves the head back by one and shifts the elements before index towards it
+            mHead = (mHead - 1 + mElements.length) % mElements.length;
+            for (int i = 0; i < index; i++) {
+                mElements[physicalIndex(i)] = mElements[physicalIndex(i + 1)];
+            }
+        }
+        else {
+            // Shifts the elements from index on towards the tail
+            for (int i = mSize; i > index; i--) {
+                mElements[physicalIndex(i)] = mElements[physicalIndex(i - 1)];
+            }
+        }
+        mElements[physicalIndex(index)] = element;
+        mSize++;
+        modCount++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E remove(int index) {
+        checkIndex(index, mSize);
+        E removed = (E) mElements[physicalIndex(index)];
+
+        if (index < mSize / 2) {
+            // Shifts the elements before index towards the tail and moves the head forward
+            for (int i = index; i > 0; i--) {
+                mElements[physicalIndex(i)] = mElements[physicalIndex(i - 1)];
+            }
+            mElements[mHead] = null;
+            mHead = (mHead + 1) % mElements.length;
+        }
+        else {
+            // Shifts the elements after index towards the head
+            for (int i = index; i < mSize - 1; i++) {
+                mElements[physicalIndex(i)] = mElements[physicalIndex(i + 1)];
+            }
+            mElements[physicalIndex(mSize - 1)] = null;
+        }
+        mSize--;
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mElements[physicalIndex(i)] = null;
+        }
+        mHead = 0;
+        mSize = 0;
+        modCount++;
+    }
+
+    private int physicalIndex(int index) {
+        return (mHead + index) % mElements.length;
+    }
+
+    private void grow() {
+        Object[] elements = new Object[mElements.length * 2];
+        for (int i = 0; i < mSize; i++) {
+            elements[i] = mElements[physicalIndex(i)];
+        }
+        mElements = elements;
+        mHead = 0;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.desmond.allaboutlistview.ListViewCellInsertion;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.view.ViewCompat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the items of several ItemFeeds into an InsertionListView so that the list stays
+ * ordered by timestamp, newest first, without ever sorting it.
+ *
+ * Every feed is expected to deliver its own items oldest first. Once per frame, up to
+ * MAX_FEED_BATCH items that arrived are appended to a buffer per feed, and the buffers are
+ * merged with a heap holding the index of every non empty buffer, ordered by the timestamp
+ * of its oldest item. The items thus come out oldest first across all feeds, at most
+ * MAX_FEED_BATCH of them per frame, and the rest waits in the feeds for the next frames,
+ * saturating them if the list cannot keep up. An item newer than the
+ * first item of the list is added to the top, together with the other new items of the
+ * frame. An item that arrives late, older than items already shown, is inserted where it
+ * belongs, found by a binary search over the list. Nothing is merged while the list is
+ * animating an insertion, so the positions found are always up to date.
+ */
+public class TimeOrderedMerger {
+
+    private static final int MAX_FEED_BATCH = 16;
+
+    private final InsertionListView mListView;
+    private final List<ListItemObject> mData;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final List<ItemFeed<ListItemObject>> mSources =
+            new ArrayList<ItemFeed<ListItemObject>>();
+    private final List<ArrayDeque<ListItemObject>> mBuffers =
+            new ArrayList<ArrayDeque<ListItemObject>>();
+    private final PriorityQueue<Integer> mHeads;
+    private int mBufferedCount = 0;
+    private int mNextSource = 0;
+
+    private final List<ListItemObject> mDrained = new ArrayList<ListItemObject>();
+    private final List<ListItemObject> mNewestItems = new ArrayList<ListItemObject>();
+
+    /**
+     * @param data the data set backing listView, ordered newest first
+     */
+    public TimeOrderedMerger(InsertionListView listView, List<ListItemObject> data) {
+        mListView = listView;
+        mData = data;
+        mHeads = new PriorityQueue<Integer>(4, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                long lhsTime = mBuffers.get(lhs).peekFirst().getTimestamp();
+                long rhsTime = mBuffers.get(rhs).peekFirst().getTimestamp();
+                return lhsTime < rhsTime ? -1 : (lhsTime > rhsTime ? 1 : lhs.compareTo(rhs));
+            }
+        });
+    }
+
+    /**
+     * Adds a feed whose items are merged into the list. Must be called on the main thread.
+     */
+    public void addSource(ItemFeed<ListItemObject> feed) {
+        mSources.add(feed);
+        mBuffers.add(new ArrayDeque<ListItemObject>());
+        feed.setOnItemsAvailableListener(new OnItemsAvailableListener() {
+            @Override
+            public void onItemsAvailable() {
+                // Called on the producer's thread, so the merge is scheduled from the main
+                // thread, as a View posts to the calling thread's queue when detached
+                mMainHandler.post(mScheduleMergeRunnable);
+            }
+        });
+    }
+
+    /**
+     * Stops listening to every feed. The items not merged yet are dropped.
+     */
+    public void release() {
+        for (ItemFeed<ListItemObject> feed : mSources) {
+            feed.setOnItemsAvailableListener(null);
+        }
+        mMainHandler.removeCallbacks(mScheduleMergeRunnable);
+        mListView.removeCallbacks(mMergeRunnable);
+    }
+
+    private final Runnable mScheduleMergeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            scheduleMerge();
+        }
+    };
+
+    private final Runnable mMergeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // Positions found now would be stale by the time the animation ends
+            if (mListView.isAnimatingInsertion()) {
+                scheduleMerge();
+                return;
+            }
+
+            drainSources();
+
+            int merged = 0;
+            while (!mHeads.isEmpty() && merged < MAX_FEED_BATCH) {
+                int source = mHeads.poll();
+                ArrayDeque<ListItemObject> buffer = mBuffers.get(source);
+                ListItemObject item = buffer.pollFirst();
+                mBufferedCount--;
+                merged++;
+                if (!buffer.isEmpty()) {
+                    mHeads.offer(source);
+                }
+
+                // Once an item is newer than the top of the list, all the following are too
+                int position = mNewestItems.isEmpty() ? findPosition(item.getTimestamp()) : 0;
+                if (position == 0) {
+                    mNewestItems.add(item);
+                }
+                else {
+                    mListView.insertAt(position, item);
+
+                    // The rest waits until the late item has been animated in
+                    if (mListView.isAnimatingInsertion()) {
+                        break;
+                    }
+                }
+            }
+
+            if (!mNewestItems.isEmpty()) {
+                mListView.addRows(mNewestItems);
+                mNewestItems.clear();
+            }
+            if (!mHeads.isEmpty() || !areSourcesEmpty()) {
+                scheduleMerge();
+            }
+        }
+    };
+
+    private void scheduleMerge() {
+        mListView.removeCallbacks(mMergeRunnable);
+        ViewCompat.postOnAnimation(mListView, mMergeRunnable);
+    }
+
+    /**
+     * Appends the items that arrived in the feeds to their buffers, until MAX_FEED_BATCH
+     * items are buffered. The feeds take turns at being drained first, so that a busy feed
+     * cannot hold back the others.
+     */
+    private void drainSources() {
+        int sourceCount = mSources.size();
+        for (int n = 0; n < sourceCount && mBufferedCount < MAX_FEED_BATCH; n++) {
+            int i = (mNextSource + n) % sourceCount;
+            mSources.get(i).drain(mDrained, MAX_FEED_BATCH - mBufferedCount);
+            if (mDrained.isEmpty()) {
+                continue;
+            }
+
+            ArrayDeque<ListItemObject> buffer = mBuffers.get(i);
+            boolean wasEmpty = buffer.isEmpty();
+            buffer.addAll(mDrained);
+            mBufferedCount += mDrained.size();
+            mDrained.clear();
+            if (wasEmpty) {
+                mHeads.offer(i);
+            }
+        }
+        if (sourceCount > 0) {
+            mNextSource = (mNextSource + 1) % sourceCount;
+        }
+    }
+
+    private boolean areSourcesEmpty() {
+        for (int i = 0; i < mSources.size(); i++) {
+            if (!mSources.get(i).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the position at which an item with the given timestamp belongs in the data
+     * set, which is ordered newest first: after every item at least as new as it
+     */
+    private int findPosition(long timestamp) {
+        int low = 0;
+        int high = mData.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mData.get(mid).getTimestamp() >= timestamp) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -13,9 +13,11 @@ import android.widget.CheckBox;
 import android.widget.ListView;
 
 import com.desmond.allaboutlistview.Cheeses;
+import com.desmond.allaboutlistview.PersistentList;
 import com.desmond.allaboutlistview.R;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
@@ -35,10 +37,9 @@ public class ListViewDeletionActivity extends ActionBarActivity {
         final Button deleteButton = (Button) findViewById(R.id.deleteButton);
         final CheckBox usePositionsCB = (CheckBox) findViewById(R.id.usePositionsCB);
         final ListView listview = (ListView) findViewById(R.id.listview);
-        final ArrayList<String> cheeseList = new ArrayList<String>();
-        for (int i = 0; i < Cheeses.sCheeseStrings.length; ++i) {
-            cheeseList.add(Cheeses.sCheeseStrings[i]);
-        }
+        // Removing from a PersistentList by index does not shift the whole backing array
+        final List<String> cheeseList =
+                new PersistentList<String>(Arrays.asList(Cheeses.sCheeseStrings));
         final StableArrayAdapter adapter = new StableArrayAdapter(this,
                 android.R.layout.simple_list_item_multiple_choice, cheeseList);
         listview.setAdapter(adapter);
@@ -67,7 +68,7 @@ public class ListViewDeletionActivity extends ActionBarActivity {
                         v.postDelayed(new Runnable() {
                             @Override
                             public void run() {
-                                adapter.remove(item);
+                                removeCheese(cheeseList, adapter, item);
                             }
                         }, 300);
                     }
@@ -89,7 +90,7 @@ public class ListViewDeletionActivity extends ActionBarActivity {
                                 @Override
                                 public void run() {
                                     view.setAlpha(1);
-                                    adapter.remove(item);
+                                    removeCheese(cheeseList, adapter, item);
                                 }
                             });
                         }
@@ -99,7 +100,7 @@ public class ListViewDeletionActivity extends ActionBarActivity {
                             v.postDelayed(new Runnable() {
                                 @Override
                                 public void run() {
-                                    adapter.remove(item);
+                                    removeCheese(cheeseList, adapter, item);
                                 }
                             }, 300);
                         }
@@ -141,6 +142,19 @@ public class ListViewDeletionActivity extends ActionBarActivity {
 
     }
 
+    /**
+     * Removes the item by index. Its position is looked up when it is removed, as the
+     * removals of the other checked items may have shifted it since the click.
+     */
+    private void removeCheese(List<String> cheeseList, ArrayAdapter<String> adapter,
+                              String item) {
+        int index = cheeseList.indexOf(item);
+        if (index >= 0) {
+            cheeseList.remove(index);
+            adapter.notifyDataSetChanged();
+        }
+    }
+
     private class StableArrayAdapter extends ArrayAdapter<String> {
 
         HashMap<String, Integer> mIdMap = new HashMap<String, Integer>();
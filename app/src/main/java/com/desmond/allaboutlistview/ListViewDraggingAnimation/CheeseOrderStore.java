@@ -0,0 +1,262 @@
+package com.desmond.allaboutlistview.ListViewDraggingAnimation;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import com.desmond.allaboutlistview.Cheeses;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persists the order of the cheeses of the dragging demo in a local SQLite database.
+ *
+ * Instead of an index, every item is given an order key, a string of base 62 digits that
+ * sorts lexicographically in the same order as the items. A moved item is given a new key
+ * that lies between the keys of its new neighbours, so a move only ever rewrites the rows
+ * of the items that moved. The writes are collected and applied in a single transaction on
+ * a background thread, and a move made before the previous one was written simply replaces
+ * the pending key of the item. The order is read back with a query on the indexed key.
+ * Once a key grows past MAX_KEY_LENGTH, all the keys are rewritten evenly spaced.
+ *
+ * There is a single store per process, so that every activity instance reads and writes
+ * through the same background thread. loadOrder must be run on the executor returned by
+ * getExecutor, so that it sees every write scheduled before it, and before any call to
+ * onItemsMoved, which in turn must be called on the main thread.
+ */
+public class CheeseOrderStore extends SQLiteOpenHelper {
+
+    private static final String DATABASE_NAME = "cheese_order.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE_ORDER = "cheese_order";
+    private static final String COLUMN_NAME = "name";
+    private static final String COLUMN_ORDER_KEY = "order_key";
+
+    private static final String DIGITS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final int BASE = DIGITS.length();
+    private static final int MAX_KEY_LENGTH = 32;
+
+    private static CheeseOrderStore sInstance;
+
+    /** Order key of every loaded item, only accessed on the main thread once loaded */
+    private final HashMap<String, String> mOrderKeys = new HashMap<String, String>();
+
+    /** Keys waiting to be written, guarded by mPendingKeysLock */
+    private final Object mPendingKeysLock = new Object();
+    private HashMap<String, String> mPendingKeys = new HashMap<String, String>();
+    private boolean mIsFlushScheduled = false;
+
+    private final ExecutorService mWriteExecutor = Executors.newSingleThreadExecutor();
+
+    private CheeseOrderStore(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Returns the store of the process, which stays open for as long as the process lives
+     */
+    public static synchronized CheeseOrderStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new CheeseOrderStore(context);
+        }
+        return sInstance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ORDER + " ("
+                + COLUMN_NAME + " TEXT PRIMARY KEY, "
+                + COLUMN_ORDER_KEY + " TEXT NOT NULL)");
+        db.execSQL("CREATE INDEX " + TABLE_ORDER + "_" + COLUMN_ORDER_KEY + " ON "
+                + TABLE_ORDER + " (" + COLUMN_ORDER_KEY + ")");
+
+        // Seed the table with the cheeses in their original order
+        int width = getKeyWidth(Cheeses.sCheeseStrings.length);
+        ContentValues values = new ContentValues();
+        for (int i = 0; i < Cheeses.sCheeseStrings.length; ++i) {
+            values.put(COLUMN_NAME, Cheeses.sCheeseStrings[i]);
+            values.put(COLUMN_ORDER_KEY, getEvenlySpacedKey(i, width));
+            db.insertWithOnConflict(TABLE_ORDER, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        }
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ORDER);
+        onCreate(db);
+    }
+
+    /**
+     * Returns the executor the writes run on, one after the other. loadOrder is run on it
+     * as well.
+     */
+    public Executor getExecutor() {
+        return mWriteExecutor;
+    }
+
+    /**
+     * Reads the items in their persisted order. This touches the disk and must be called on
+     * the executor returned by getExecutor.
+     */
+    public ArrayList<String> loadOrder() {
+        ArrayList<String> items = new ArrayList<String>();
+        Cursor cursor = getReadableDatabase().query(TABLE_ORDER,
+                new String[] {COLUMN_NAME, COLUMN_ORDER_KEY},
+                null, null, null, null, COLUMN_ORDER_KEY);
+        try {
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(0);
+                items.add(name);
+                mOrderKeys.put(name, cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return items;
+    }
+
+    /**
+     * Gives the count items starting at position in items new keys between the keys of the
+     * items now surrounding them, and schedules the new keys to be written. items must hold
+     * all the items, since they are all given new keys if one of the keys grows too long.
+     */
+    public void onItemsMoved(List<String> items, int position, int count) {
+        String lo = position > 0 ? mOrderKeys.get(items.get(position - 1)) : null;
+        String hi = position + count < items.size()
+                ? mOrderKeys.get(items.get(position + count)) : null;
+
+        synchronized (mPendingKeysLock) {
+            boolean isKeyTooLong = false;
+            for (int i = position; i < position + count; ++i) {
+                String key = keyBetween(lo, hi);
+                String item = items.get(i);
+                mOrderKeys.put(item, key);
+                mPendingKeys.put(item, key);
+                isKeyTooLong |= key.length() > MAX_KEY_LENGTH;
+                lo = key;
+            }
+
+            // Moves into the same gap lengthen the keys by a digit each, so the keys are
+            // spaced out again, and written by the same flush
+            if (isKeyTooLong) {
+                int width = getKeyWidth(items.size());
+                for (int i = 0; i < items.size(); ++i) {
+                    String key = getEvenlySpacedKey(i, width);
+                    String item = items.get(i);
+                    mOrderKeys.put(item, key);
+                    mPendingKeys.put(item, key);
+                }
+            }
+
+            if (!mIsFlushScheduled) {
+                mIsFlushScheduled = true;
+                mWriteExecutor.execute(mFlushRunnable);
+            }
+        }
+    }
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private void flush() {
+        HashMap<String, String> keys;
+        synchronized (mPendingKeysLock) {
+            keys = mPendingKeys;
+            mPendingKeys = new HashMap<String, String>();
+            mIsFlushScheduled = false;
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_ORDER + " SET "
+                + COLUMN_ORDER_KEY + " = ? WHERE " + COLUMN_NAME + " = ?");
+        db.beginTransaction();
+        try {
+            for (Map.Entry<String, String> entry : keys.entrySet()) {
+                update.bindString(1, entry.getValue());
+                update.bindString(2, entry.getKey());
+                update.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            update.close();
+        }
+    }
+
+    /**
+     * Returns a key that sorts strictly between lo and hi, where a null lo stands for the
+     * start and a null hi for the end of the order. Neither lo, hi nor the returned key
+     * ever end with the zero digit, which guarantees there always is room for another key
+     * between two of them.
+     */
+    static String keyBetween(String lo, String hi) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; ; ++i) {
+            int loDigit = (lo != null && i < lo.length()) ? DIGITS.indexOf(lo.charAt(i)) : 0;
+            int hiDigit = (hi != null && i < hi.length()) ? DIGITS.indexOf(hi.charAt(i)) : BASE;
+
+            if (loDigit == hiDigit) {
+                key.append(DIGITS.charAt(loDigit));
+                continue;
+            }
+
+            int midDigit = (loDigit + hiDigit) / 2;
+            if (midDigit > loDigit) {
+                key.append(DIGITS.charAt(midDigit));
+                return key.toString();
+            }
+
+            // The digits are adjacent, so the key is made to follow lo past this digit, after
+            // which it is already smaller than hi
+            key.append(DIGITS.charAt(loDigit));
+            hi = null;
+        }
+    }
+
+    /**
+     * Returns the number of digits needed to give count items distinct fixed width keys
+     */
+    private static int getKeyWidth(int count) {
+        int width = 1;
+        for (int n = count; n >= BASE; n /= BASE) {
+            width++;
+        }
+        return width;
+    }
+
+    /**
+     * Returns the key of the item at index among evenly spaced keys of the given width.
+     * Fixed width keys keep the keys short, and the trailing digit leaves room on both
+     * sides of them.
+     */
+    private static String getEvenlySpacedKey(int index, int width) {
+        return toFixedWidthKey(index, width) + DIGITS.charAt(BASE / 2);
+    }
+
+    private static String toFixedWidthKey(int value, int width) {
+        char[] digits = new char[width];
+        for (int i = width - 1; i >= 0; --i) {
+            digits[i] = DIGITS.charAt(value % BASE);
+            value /= BASE;
+        }
+        return new String(digits);
+    }
+}
@@ -6,23 +6,33 @@ import android.animation.ObjectAnimator;
 import android.animation.TypeEvaluator;
 import android.animation.ValueAnimator;
 import android.content.Context;
+import android.database.DataSetObserver;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewTreeObserver;
+import android.view.animation.AnimationUtils;
 import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.BaseAdapter;
+import android.widget.ListAdapter;
 import android.widget.ListView;
 
-import java.util.ArrayList;
+import com.desmond.allaboutlistview.R;
+
+import java.util.List;
 
 /**
  * The dynamic listview is an extension of listview that supports cell dragging
@@ -42,16 +52,26 @@ import java.util.ArrayList;
  * accompanied by animation takes place. When the user releases the hover cell,
  * it animates into its corresponding position in the listview.
  *
- * When the hover cell is either above or below the bounds of the listview, this
- * listview also scrolls on its own so as to reveal additional content.
+ * When the hover cell is near the top or bottom edge of the listview, this
+ * listview also scrolls on its own, once per frame and faster the deeper the hover
+ * cell is into the edge, so as to reveal additional content.
+ *
+ * Optionally, the data set changes can be deferred until the hover cell is dropped
+ * (see setDeferDataChangesUntilDrop). The cells are then only translated to open a
+ * gap where the dragged item would land, and the backing list is mutated once.
  */
 public class DynamicListView extends ListView {
 
-    private final int SMOOTH_SCROLL_AMOUNT_AT_EDGE = 15;
+    private final int AUTO_SCROLL_EDGE_ZONE = 48;
+    private final int AUTO_SCROLL_MAX_SPEED = 1500;
+    private final int AUTO_SCROLL_MAX_FRAME_TIME = 50;
     private final int MOVE_DURATION = 150;
     private final int LINE_THICKNESS = 15;
+    private final int SELECTION_COLOR = 0xFF33B5E5;
+    private final int BLOCK_BADGE_RADIUS = 14;
+    private final int BLOCK_BADGE_TEXT_SIZE = 14;
 
-    public ArrayList<String> mCheeseList;
+    public List<String> mCheeseList;
 
     private int mLastEventY = -1;
 
@@ -61,8 +81,11 @@ public class DynamicListView extends ListView {
     private int mTotalOffset = 0;
 
     private boolean mCellIsMobile = false;
-    private boolean mIsMobileScrolling = false;
-    private int mSmoothScrollAmountAtEdge = 0;
+    private int mAutoScrollEdgeZone = 0;
+    private float mAutoScrollMaxSpeed = 0;
+    private boolean mIsAutoScrollScheduled = false;
+    private long mLastAutoScrollTime = 0;
+    private float mAutoScrollRemainder = 0;
 
     private final int INVALID_ID = -1;
     private long mAboveItemId = INVALID_ID;
@@ -70,8 +93,13 @@ public class DynamicListView extends ListView {
     private long mBelowItemId = INVALID_ID;
 
     private BitmapDrawable mHoverCell;
+    private boolean mUseLiveHoverCell = false;
+    private boolean mIsDrawingLiveHoverCell = false;
+    private View mLiveHoverCellView;
+    private Paint mLiveHoverCellBorderPaint;
     private Rect mHoverCellCurrentBounds;
     private Rect mHoverCellOriginalBounds;
+    private final Rect mHoverCellDirtyRect = new Rect();
 
     private final int INVALID_POINTER_ID = -1;
     private int mActivePointerId = INVALID_POINTER_ID;
@@ -79,6 +107,46 @@ public class DynamicListView extends ListView {
     private boolean mIsWaitingForScrollFinish = false;
     private int mScrollState = OnScrollListener.SCROLL_STATE_IDLE;
 
+    private boolean mDeferDataChangesUntilDrop = false;
+    private OnItemsMovedListener mOnItemsMovedListener;
+    private boolean mCoalesceTouchMoves = false;
+    private int mDragHandleId = 0;
+    private boolean mIsDownOnDragHandle = false;
+    private final Rect mDragHandleRect = new Rect();
+    private int mTouchSlop = 0;
+
+    private final SparseBooleanArray mSelectedItemIds = new SparseBooleanArray();
+    private boolean mIsBlockDrag = false;
+    private String mBlockDragLabel;
+    private int[] mSelectedPositions = new int[0];
+    private int mDragBlockStart = 0;
+    private int mDragBlockCount = 0;
+    private Paint mSelectionMarkerPaint;
+    private Paint mBlockBadgeTextPaint;
+    private float mBlockBadgeRadius = 0;
+    private boolean mIsDragFrameScheduled = false;
+    private int mMobileOriginalPosition = INVALID_POSITION;
+    private int mMobileTargetPosition = INVALID_POSITION;
+
+    private long[] mRecordedIds = new long[0];
+    private int[] mRecordedTops = new int[0];
+    private int mRecordedCount = 0;
+    private boolean mIsDisplacedCellsAnimationPending = false;
+    private boolean mIsDropPending = false;
+
+    /**
+     * Maps the stable id of every visible item to the index of its child view. The ids
+     * handed out by StableArrayAdapter always fit in an int, which lets the map avoid
+     * boxing. The index is rebuilt lazily, at most once per layout, data set change or
+     * change of the visible window, so the id lookups performed on every touch event
+     * during a drag neither walk the children nor query the adapter.
+     */
+    private final SparseIntArray mChildIndexById = new SparseIntArray();
+    private boolean mIsIdIndexValid = false;
+    private int mIndexedFirstPosition = INVALID_POSITION;
+    private int mIndexedChildCount = 0;
+    private long[] mIndexedIds = new long[0];
+
     public DynamicListView(Context context) {
         super(context);
         init(context);
@@ -97,8 +165,25 @@ public class DynamicListView extends ListView {
     public void init(Context ctx) {
         setOnItemLongClickListener(mOnItemLongClickListener);
         setOnScrollListener(mScrollListener);
+        setRecyclerListener(mRecyclerListener);
+        mTouchSlop = ViewConfiguration.get(ctx).getScaledTouchSlop();
         DisplayMetrics metrics = ctx.getResources().getDisplayMetrics();
-        mSmoothScrollAmountAtEdge = (int) (SMOOTH_SCROLL_AMOUNT_AT_EDGE / metrics.density);
+        mAutoScrollEdgeZone = (int) (AUTO_SCROLL_EDGE_ZONE * metrics.density);
+        mAutoScrollMaxSpeed = AUTO_SCROLL_MAX_SPEED * metrics.density;
+
+        mLiveHoverCellBorderPaint = new Paint();
+        mLiveHoverCellBorderPaint.setStyle(Paint.Style.STROKE);
+        mLiveHoverCellBorderPaint.setStrokeWidth(LINE_THICKNESS);
+        mLiveHoverCellBorderPaint.setColor(Color.BLACK);
+
+        mSelectionMarkerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mSelectionMarkerPaint.setColor(SELECTION_COLOR);
+
+        mBlockBadgeTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mBlockBadgeTextPaint.setColor(Color.WHITE);
+        mBlockBadgeTextPaint.setTextAlign(Paint.Align.CENTER);
+        mBlockBadgeTextPaint.setTextSize(BLOCK_BADGE_TEXT_SIZE * metrics.scaledDensity);
+        mBlockBadgeRadius = BLOCK_BADGE_RADIUS * metrics.density;
     }
 
     /**
@@ -108,21 +193,106 @@ public class DynamicListView extends ListView {
      */
     private BitmapDrawable getAndAddHoverView(View v) {
 
+        Bitmap b = getBitmapWithBorder(v);
+
+        BitmapDrawable drawable = new BitmapDrawable(getResources(), b);
+
+        setHoverCellBounds(v);
+
+        drawable.setBounds(mHoverCellCurrentBounds);
+
+        return drawable;
+    }
+
+    /**
+     * Sets up the live hover cell, which is used instead of the bitmap hover cell when
+     * setUseLiveHoverCell is enabled. A detached row view, retained across drags, is bound
+     * to the dragged item through the adapter and laid out with the size of the selected
+     * view. It is then drawn directly in dispatchDraw, so no bitmap is allocated when a drag
+     * starts and the hover cell reflects any change made to the item while it is dragged.
+     */
+    private void prepareLiveHoverCell(View v, int position) {
+        setHoverCellBounds(v);
+        bindLiveHoverCell(position);
+        mIsDrawingLiveHoverCell = true;
+    }
+
+    /**
+     * Binds the retained hover row view to the item at position and lays it out with the
+     * size of the hover cell
+     */
+    private void bindLiveHoverCell(int position) {
+        int w = mHoverCellOriginalBounds.width();
+        int h = mHoverCellOriginalBounds.height();
+
+        mLiveHoverCellView = getAdapter().getView(position, mLiveHoverCellView, this);
+        mLiveHoverCellView.measure(MeasureSpec.makeMeasureSpec(w, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(h, MeasureSpec.EXACTLY));
+        mLiveHoverCellView.layout(0, 0, w, h);
+    }
+
+    /**
+     * Draws the live hover cell at its current bounds, followed by the same black border the
+     * bitmap hover cell has
+     */
+    private void drawLiveHoverCell(Canvas canvas) {
+        int saveCount = canvas.save();
+        canvas.translate(mHoverCellCurrentBounds.left, mHoverCellCurrentBounds.top);
+        canvas.clipRect(0, 0, mHoverCellCurrentBounds.width(), mHoverCellCurrentBounds.height());
+        mLiveHoverCellView.draw(canvas);
+        canvas.drawRect(0, 0, mHoverCellCurrentBounds.width(), mHoverCellCurrentBounds.height(),
+                mLiveHoverCellBorderPaint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * Stores the original bounds of the view that is about to be dragged
+     */
+    private void setHoverCellBounds(View v) {
         int w = v.getWidth();
         int h = v.getHeight();
         int top = v.getTop();
         int left = v.getLeft();
 
-        Bitmap b = getBitmapWithBorder(v);
-
-        BitmapDrawable drawable = new BitmapDrawable(getResources(), b);
-
         mHoverCellOriginalBounds = new Rect(left, top, left + w, top + h);
         mHoverCellCurrentBounds = new Rect(mHoverCellOriginalBounds);
+    }
 
-        drawable.setBounds(mHoverCellCurrentBounds);
+    /**
+     * Drops whichever hover cell is currently being drawn
+     */
+    private void discardHoverCell() {
+        mHoverCell = null;
+        mIsDrawingLiveHoverCell = false;
+        mIsBlockDrag = false;
+    }
 
-        return drawable;
+    /**
+     * Draws a marker along the left edge of every visible cell selected for a block drag
+     */
+    private void drawDragSelectionMarkers(Canvas canvas) {
+        ensureIdIndex();
+        for (int i = 0; i < mIndexedChildCount; i++) {
+            if (mSelectedItemIds.get((int) mIndexedIds[i])) {
+                View child = getChildAt(i);
+                int top = child.getTop() + (int) child.getTranslationY();
+                canvas.drawRect(child.getLeft(), top, child.getLeft() + LINE_THICKNESS,
+                        top + child.getHeight(), mSelectionMarkerPaint);
+            }
+        }
+    }
+
+    /**
+     * Draws a badge holding the number of items being dragged in the corner of the hover
+     * cell, turning it into the single representation of the whole block
+     */
+    private void drawBlockDragBadge(Canvas canvas) {
+        float cx = mHoverCellCurrentBounds.right - LINE_THICKNESS - mBlockBadgeRadius;
+        float cy = mHoverCellCurrentBounds.top + LINE_THICKNESS + mBlockBadgeRadius;
+        canvas.drawCircle(cx, cy, mBlockBadgeRadius, mSelectionMarkerPaint);
+        canvas.drawText(mBlockDragLabel, cx,
+                cy - (mBlockBadgeTextPaint.descent() + mBlockBadgeTextPaint.ascent()) / 2,
+                mBlockBadgeTextPaint);
     }
 
     /**
@@ -174,83 +344,211 @@ public class DynamicListView extends ListView {
      * @return
      */
     public View getViewForID(long itemID) {
+        int index = getChildIndexForID(itemID);
+        if (index < 0) return null;
+        else           return getChildAt(index);
+    }
+
+    /**
+     * Retrieves the position in the list corresponding to itemID
+     */
+    public int getPositionForID(long itemID) {
+        int index = getChildIndexForID(itemID);
+        if (index < 0) return -1;
+        else           return mIndexedFirstPosition + index;
+    }
+
+    /**
+     * Returns the index of the child view showing itemID, or -1 if that item is not visible
+     */
+    private int getChildIndexForID(long itemID) {
+        if (itemID == INVALID_ID) {
+            return -1;
+        }
+        ensureIdIndex();
+        return mChildIndexById.get((int) itemID, -1);
+    }
+
+    /**
+     * Rebuilds the id to child index map if a layout, a data set change or a scroll that
+     * changed the visible window has happened since it was last built
+     */
+    private void ensureIdIndex() {
         int firstVisiblePosition = getFirstVisiblePosition();
-        StableArrayAdapter adapter = (StableArrayAdapter) getAdapter();
-        for (int i = 0; i < getChildCount(); i++) {
-            View v = getChildAt(i);
+        int childCount = getChildCount();
+        if (mIsIdIndexValid && mIndexedFirstPosition == firstVisiblePosition
+                && mIndexedChildCount == childCount) {
+            return;
+        }
+
+        mChildIndexById.clear();
+        if (mIndexedIds.length < childCount) {
+            mIndexedIds = new long[childCount];
+        }
+        ListAdapter adapter = getAdapter();
+        int itemCount = adapter != null ? adapter.getCount() : 0;
+        for (int i = 0; i < childCount; i++) {
             int position = firstVisiblePosition + i;
-            long id = adapter.getItemId(position);
-            if (id == itemID) {
-                return v;
+            mIndexedIds[i] = position < itemCount ? adapter.getItemId(position) : INVALID_ID;
+            if (mIndexedIds[i] != INVALID_ID) {
+                mChildIndexById.put((int) mIndexedIds[i], i);
             }
         }
-        return null;
+
+        mIndexedFirstPosition = firstVisiblePosition;
+        mIndexedChildCount = childCount;
+        mIsIdIndexValid = true;
+    }
+
+    @Override
+    protected void layoutChildren() {
+        super.layoutChildren();
+        mIsIdIndexValid = false;
+    }
+
+    @Override
+    public void setAdapter(ListAdapter adapter) {
+        ListAdapter oldAdapter = getAdapter();
+        if (oldAdapter != null) {
+            oldAdapter.unregisterDataSetObserver(mIdIndexObserver);
+        }
+        super.setAdapter(adapter);
+        if (adapter != null) {
+            adapter.registerDataSetObserver(mIdIndexObserver);
+        }
+        mIsIdIndexValid = false;
     }
 
     /**
-     * Retrieves the position in the list corresponding to itemID
+     * Invalidates the id index whenever the adapter's data changes, since the children
+     * will then be bound to different items on the next layout
      */
-    public int getPositionForID(long itemID) {
-        View v = getViewForID(itemID);
-        if (v == null) return -1;
-        else           return getPositionForView(v);
-    }
+    private final DataSetObserver mIdIndexObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            mIsIdIndexValid = false;
+
+            // Keeps the live hover cell in sync with the item it represents
+            if (mIsDrawingLiveHoverCell && mMobileItemId != INVALID_ID) {
+                int position = getPositionForID(mMobileItemId);
+                if (position != INVALID_POSITION) {
+                    bindLiveHoverCell(position);
+                    invalidate();
+                }
+            }
+        }
+
+        @Override
+        public void onInvalidated() {
+            mIsIdIndexValid = false;
+        }
+    };
 
     /**
      * dispatchDraw gets invoked when all the child views are about to be drawn
-     * By overriding this method, the hover cell (BitmapDrawable) can be drawn
-     * over the listview's items whenever the listview is redrawn
+     * By overriding this method, the hover cell (BitmapDrawable or live row view) can be
+     * drawn over the listview's items whenever the listview is redrawn
      */
     @Override
     protected void dispatchDraw(Canvas canvas) {
         super.dispatchDraw(canvas);
+        if (mSelectedItemIds.size() > 0) {
+            drawDragSelectionMarkers(canvas);
+        }
         if (mHoverCell != null) {
             mHoverCell.draw(canvas);
         }
+        else if (mIsDrawingLiveHoverCell) {
+            drawLiveHoverCell(canvas);
+        }
+        if (mIsBlockDrag) {
+            drawBlockDragBadge(canvas);
+        }
     }
 
+    /**
+     * The down position and the drag handle hit test are recorded here rather than in
+     * onTouchEvent, since a clickable drag handle consumes the down event itself. Once the
+     * gesture on the handle moves past the touch slop, the drag starts and the rest of the
+     * gesture is taken over from the handle.
+     */
     @Override
-    public boolean onTouchEvent(MotionEvent ev) {
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
 
         switch (ev.getAction() & MotionEvent.ACTION_MASK) {
             case MotionEvent.ACTION_DOWN:
                 mDownX = (int) ev.getX();
                 mDownY = (int) ev.getY();
                 mActivePointerId = ev.getPointerId(0);
+                mIsDownOnDragHandle = mDragHandleId != 0 && !mCellIsMobile
+                        && isOnDragHandle(mDownX, mDownY);
                 break;
 
             case MotionEvent.ACTION_MOVE:
-                if (mActivePointerId == INVALID_POINTER_ID) {
+                if (!mIsDownOnDragHandle || mActivePointerId == INVALID_POINTER_ID) {
                     break;
                 }
 
                 int pointerIndex = ev.findPointerIndex(mActivePointerId);
-
                 mLastEventY = (int) ev.getY(pointerIndex);
-                int deltaY = mLastEventY - mDownY;
 
-                if (mCellIsMobile) {
-                    mHoverCellCurrentBounds.offsetTo(mHoverCellOriginalBounds.left,
-                            mHoverCellOriginalBounds.top + deltaY + mTotalOffset);
+                if (!mCellIsMobile && Math.abs(mLastEventY - mDownY) > mTouchSlop) {
+                    mIsDownOnDragHandle = false;
+                    startDragFromHandle(ev);
+                    if (mCellIsMobile) {
+                        return true;
+                    }
+                }
+                break;
 
-                    mHoverCell.setBounds(mHoverCellCurrentBounds);
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                mIsDownOnDragHandle = false;
+                break;
 
-                    invalidate();
+            default:
+                break;
+        }
+        return super.onInterceptTouchEvent(ev);
+    }
 
-                    handleCellSwitch();
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+
+        switch (ev.getAction() & MotionEvent.ACTION_MASK) {
+            case MotionEvent.ACTION_MOVE:
+                if (mActivePointerId == INVALID_POINTER_ID) {
+                    break;
+                }
+
+                int pointerIndex = ev.findPointerIndex(mActivePointerId);
 
-                    mIsMobileScrolling = false;
-                    handleMobileCellScroll();
+                mLastEventY = (int) ev.getY(pointerIndex);
 
+                if (mIsDownOnDragHandle && !mCellIsMobile
+                        && Math.abs(mLastEventY - mDownY) > mTouchSlop) {
+                    mIsDownOnDragHandle = false;
+                    startDragFromHandle(ev);
+                }
+
+                if (mCellIsMobile) {
+                    if (mCoalesceTouchMoves) {
+                        scheduleDragFrame();
+                    }
+                    else {
+                        handleDragMove();
+                    }
                     return false;
                 }
                 break;
 
             case MotionEvent.ACTION_UP:
+                mIsDownOnDragHandle = false;
                 touchEventsEnded();
                 break;
 
             case MotionEvent.ACTION_CANCEL:
+                mIsDownOnDragHandle = false;
                 touchEventsCancelled();
                 break;
 
@@ -275,17 +573,64 @@ public class DynamicListView extends ListView {
         return super.onTouchEvent(ev);
     }
 
+    /**
+     * Moves the hover cell to the last touch position and runs the cell switching and
+     * edge scrolling logic for that position
+     */
+    private void handleDragMove() {
+        int deltaY = mLastEventY - mDownY;
+        moveHoverCellTo(mHoverCellOriginalBounds.left,
+                mHoverCellOriginalBounds.top + deltaY + mTotalOffset);
+
+        handleCellSwitch();
+
+        handleMobileCellScroll();
+    }
+
+    /**
+     * Used when touch moves are coalesced. Rather than handling every move event as it
+     * arrives, the drag is handled once on the next animation frame, using the most
+     * recent touch position.
+     */
+    private void scheduleDragFrame() {
+        if (!mIsDragFrameScheduled) {
+            mIsDragFrameScheduled = true;
+            ViewCompat.postOnAnimation(this, mDragFrameRunnable);
+        }
+    }
+
+    /**
+     * Handles a pending coalesced move straight away, so that nothing is lost when the
+     * drag ends before the next frame
+     */
+    private void flushDragFrame() {
+        if (mIsDragFrameScheduled) {
+            removeCallbacks(mDragFrameRunnable);
+            mDragFrameRunnable.run();
+        }
+    }
+
+    private final Runnable mDragFrameRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mIsDragFrameScheduled = false;
+            if (mCellIsMobile) {
+                handleDragMove();
+            }
+        }
+    };
+
     /**
      * Resets all the appropriate fields to default state while also animating
      * the hover cell back to its correct position
      */
     private void touchEventsEnded() {
-        final View mobileView = getViewForID(mMobileItemId);
+        flushDragFrame();
+        stopAutoScroll();
 
         if (mCellIsMobile || mIsWaitingForScrollFinish) {
             mCellIsMobile = false;
             mIsWaitingForScrollFinish = false;
-            mIsMobileScrolling = false;
             mActivePointerId = INVALID_POINTER_ID;
 
             /*
@@ -298,67 +643,123 @@ public class DynamicListView extends ListView {
                 return;
             }
 
-            mHoverCellCurrentBounds.offsetTo(mHoverCellOriginalBounds.left, mobileView.getTop());
-
-            ObjectAnimator hoverViewAnimator = ObjectAnimator.ofObject(mHoverCell, "bounds", sBoundEvaluator, mHoverCellCurrentBounds);
-            hoverViewAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-                @Override
-                public void onAnimationUpdate(ValueAnimator animation) {
-                    invalidate();
-                }
-            });
-            hoverViewAnimator.addListener(new AnimatorListenerAdapter() {
-
-                @Override
-                public void onAnimationStart(Animator animation) {
-                    setEnabled(false);
-                }
-
-                @Override
-                public void onAnimationEnd(Animator animation) {
-                    mAboveItemId = INVALID_ID;
-                    mMobileItemId = INVALID_ID;
-                    mBelowItemId = INVALID_ID;
-                    mobileView.setVisibility(VISIBLE);
-                    mHoverCell = null;
-                    setEnabled(true);
-                    invalidate();
-                }
-            });
-            hoverViewAnimator.start();
+            commitDrop();
         }
         else {
             touchEventsCancelled();
         }
     }
 
+    /**
+     * Animates the hover cell into the bounds of the view passed in, after which the
+     * view is made visible again and the hover cell is discarded. If the view is no
+     * longer on screen, the hover cell is discarded straight away.
+     */
+    private void animateHoverCellTo(final View mobileView) {
+        if (mobileView == null) {
+            mAboveItemId = INVALID_ID;
+            mMobileItemId = INVALID_ID;
+            mBelowItemId = INVALID_ID;
+            discardHoverCell();
+            invalidate();
+            return;
+        }
+
+        Rect startBounds = new Rect(mHoverCellCurrentBounds);
+        Rect endBounds = new Rect(mHoverCellCurrentBounds);
+        endBounds.offsetTo(mHoverCellOriginalBounds.left, mobileView.getTop());
+
+        ValueAnimator hoverViewAnimator = ValueAnimator.ofObject(sBoundEvaluator, startBounds, endBounds);
+        hoverViewAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                Rect bounds = (Rect) animation.getAnimatedValue();
+                moveHoverCellTo(bounds.left, bounds.top);
+            }
+        });
+        hoverViewAnimator.addListener(new AnimatorListenerAdapter() {
+
+            @Override
+            public void onAnimationStart(Animator animation) {
+                setEnabled(false);
+            }
+
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                mAboveItemId = INVALID_ID;
+                mMobileItemId = INVALID_ID;
+                mBelowItemId = INVALID_ID;
+                mobileView.setVisibility(VISIBLE);
+                discardHoverCell();
+                setEnabled(true);
+                invalidate();
+            }
+        });
+        hoverViewAnimator.start();
+    }
+
+    /**
+     * Moves the hover cell so that its top left corner sits at (left, top). Rather than
+     * redrawing the whole listview, only the union of the areas covered by the hover cell
+     * before and after the move is invalidated.
+     */
+    private void moveHoverCellTo(int left, int top) {
+        mHoverCellDirtyRect.set(mHoverCellCurrentBounds);
+        mHoverCellCurrentBounds.offsetTo(left, top);
+        if (mHoverCell != null) {
+            mHoverCell.setBounds(mHoverCellCurrentBounds);
+        }
+        mHoverCellDirtyRect.union(mHoverCellCurrentBounds);
+        invalidate(mHoverCellDirtyRect);
+    }
+
     /**
      * Resets all the appropriate fields to a default state
      */
     private void touchEventsCancelled() {
+        removeCallbacks(mDragFrameRunnable);
+        mIsDragFrameScheduled = false;
+        stopAutoScroll();
+
+        // A plain tap must not disturb the cells still settling after a drop
+        if (mDeferDataChangesUntilDrop && mCellIsMobile) {
+            resetDragGap();
+        }
         View mobileView = getViewForID(mMobileItemId);
         if (mCellIsMobile) {
             mAboveItemId = INVALID_ID;
             mMobileItemId = INVALID_ID;
             mBelowItemId = INVALID_ID;
-            mobileView.setVisibility(VISIBLE);
-            mHoverCell = null;
+            if (mobileView != null) {
+                mobileView.setVisibility(VISIBLE);
+            }
+            discardHoverCell();
             invalidate();
         }
         mCellIsMobile = false;
-        mIsMobileScrolling = false;
         mActivePointerId = INVALID_POINTER_ID;
     }
 
     /**
      * This method determines whether the hover cell has been shifted far enough to invoke
-     * a cell swap. If so, then the respective cell swap candidate is determined and the data
-     * set is changed. Upon posting a notification of the data set change, a layout is invoked
-     * to place the cells in the right place. Using a ViewTreeObserver and a corresponding
-     * onPreDrawListener, we can offset the cell being swapped to where it previously was and
-     * then animate it to its new position
+     * a cell switch. If so, the slot the hover cell now points at is determined, which may
+     * lie several cells away if the hover cell was flung, and the dragged item is moved
+     * there in the data set in one go. Upon posting a notification of the data set change,
+     * a layout is invoked to place the cells in the right place. Using a ViewTreeObserver
+     * and a corresponding onPreDrawListener, we can offset every displaced cell to where it
+     * previously was and then animate all of them to their new positions together. No
+     * further switch is made until that layout has taken place, since the cells on screen
+     * do not match the data set before then.
      */
     private void handleCellSwitch() {
+        if (mDeferDataChangesUntilDrop) {
+            updateDragGap();
+            return;
+        }
+        if (mIsDisplacedCellsAnimationPending) {
+            return;
+        }
+
         final int deltaY = mLastEventY - mDownY;
         int deltaYTotal = mHoverCellOriginalBounds.top + mTotalOffset + deltaY;
 
@@ -371,106 +772,633 @@ public class DynamicListView extends ListView {
 
         if (isBelow || isAbove) {
 
-            final long switchItemID = isBelow ? mBelowItemId : mAboveItemId;
-            View switchView = isBelow ? belowView : aboveView;
-            final int originalItem = getPositionForView(mobileView);
-
-            if (switchView == null) {
+            if (mobileView == null) {
                 updateNeighborViewsForID(mMobileItemId);
                 return;
             }
 
-            swapElements(mCheeseList, originalItem, getPositionForView(switchView));
+            final int originalItem = getPositionForID(mMobileItemId);
+            final int targetItem = getTargetPositionForHover(deltaYTotal, originalItem);
+
+            animateDisplacedCellsAfterLayout();
+
+            moveElement(mCheeseList, originalItem, targetItem);
 
             ((BaseAdapter) getAdapter()).notifyDataSetChanged();
+            notifyItemsMoved(targetItem, 1);
 
             mDownY = mLastEventY;
+            mTotalOffset += deltaY;
 
-            final int switchViewStartTop = switchView.getTop();
+            updateNeighborViewsForID(mMobileItemId);
+        }
+    }
 
-            switchView.setVisibility(View.INVISIBLE);
-            mobileView.setVisibility(View.VISIBLE);
+    /**
+     * Records where the visible cells are on screen and has them animated from there once the
+     * layout following the next data set change has taken place. Several changes made before
+     * that layout share one recording and one animation pass, so the cells always start from
+     * where they were last drawn.
+     */
+    private void animateDisplacedCellsAfterLayout() {
+        if (mIsDisplacedCellsAnimationPending) {
+            return;
+        }
+        recordVisibleCellTops();
+        getViewTreeObserver().addOnPreDrawListener(mDisplacedCellsPreDrawListener);
+        mIsDisplacedCellsAnimationPending = true;
+    }
 
-            updateNeighborViewsForID(mMobileItemId);
+    /**
+     * Registered by animateDisplacedCellsAfterLayout, and reused for every data set change
+     * rather than allocating a listener per swap. It removes itself on the first pre-draw,
+     * and also settles the hover cell if the change was made by a drop.
+     */
+    private final ViewTreeObserver.OnPreDrawListener mDisplacedCellsPreDrawListener =
+            new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            getViewTreeObserver().removeOnPreDrawListener(this);
+            mIsDisplacedCellsAnimationPending = false;
+
+            if (mIsDropPending) {
+                mIsDropPending = false;
+                if (mDeferDataChangesUntilDrop) {
+                    resetDragGap();
+                }
+                animateDisplacedCells();
+                animateHoverCellTo(getViewForID(mMobileItemId));
+            }
+            else {
+                animateDisplacedCells();
+            }
+            return true;
+        }
+    };
 
-            final ViewTreeObserver observer = getViewTreeObserver();
-            observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
-                @Override
-                public boolean onPreDraw() {
-                    observer.removeOnPreDrawListener(this);
+    /**
+     * Stores the stable id and the current on screen top of every visible cell, so that
+     * the cells can be animated from there after the next data set change
+     */
+    private void recordVisibleCellTops() {
+        int childCount = getChildCount();
+        if (mRecordedIds.length < childCount) {
+            mRecordedIds = new long[childCount];
+            mRecordedTops = new int[childCount];
+        }
+
+        ListAdapter adapter = getAdapter();
+        int firstVisiblePosition = getFirstVisiblePosition();
+        for (int i = 0; i < childCount; i++) {
+            View child = getChildAt(i);
+            mRecordedIds[i] = adapter.getItemId(firstVisiblePosition + i);
+            mRecordedTops[i] = child.getTop() + (int) child.getTranslationY();
+        }
+        mRecordedCount = childCount;
+    }
+
+    /**
+     * Returns the top recorded for itemID by recordVisibleCellTops, or Integer.MIN_VALUE if
+     * that item was not visible at the time
+     */
+    private int getRecordedTopForID(long itemID) {
+        for (int i = 0; i < mRecordedCount; i++) {
+            if (mRecordedIds[i] == itemID) {
+                return mRecordedTops[i];
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * Called once the layout following a data set change has taken place. Every cell whose
+     * item was visible before the change is offset back to its recorded top, and all of them
+     * are animated into their new positions. The cell holding the dragged item is hidden
+     * since the hover cell is drawn in its place.
+     *
+     * Each cell is animated by its own ObjectAnimator, which is cancelled and retargeted
+     * if the cell is displaced again while still moving. Since the recorded tops include the
+     * translation of the cells, a retargeted cell continues from where it was drawn instead
+     * of jumping, and no cell ever has two animations fighting over its translation.
+     */
+    private void animateDisplacedCells() {
+        ListAdapter adapter = getAdapter();
+        int firstVisiblePosition = getFirstVisiblePosition();
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            long itemId = adapter.getItemId(firstVisiblePosition + i);
+
+            cancelTranslationAnimation(child);
+            if (itemId == mMobileItemId) {
+                child.setVisibility(INVISIBLE);
+                child.setTranslationY(0);
+                continue;
+            }
+            child.setVisibility(VISIBLE);
 
-                    View switchView = getViewForID(switchItemID);
+            int startTop = getRecordedTopForID(itemId);
+            if (startTop == Integer.MIN_VALUE || startTop == child.getTop()) {
+                child.setTranslationY(0);
+                continue;
+            }
+
+            child.setTranslationY(startTop - child.getTop());
+            animateTranslationY(child, 0);
+        }
+        mRecordedCount = 0;
+    }
 
-                    mTotalOffset += deltaY;
+    /**
+     * Used instead of the swapping logic of handleCellSwitch when the data set changes are
+     * deferred until the drop. The slot the hover cell currently points at is determined,
+     * and the cells between that slot and the original one of the dragged item are
+     * translated by the height of the dragged item so as to open a gap where it would land.
+     * Neither the adapter nor the layout are touched, so dragging across several cells only
+     * costs a few translation changes.
+     */
+    private void updateDragGap() {
+        int targetPosition = getTargetPositionForHover(mHoverCellCurrentBounds.top,
+                mMobileOriginalPosition);
+        boolean targetChanged = targetPosition != mMobileTargetPosition;
+        mMobileTargetPosition = targetPosition;
+
+        int from = mMobileOriginalPosition;
+        int gap = mHoverCellOriginalBounds.height() + getDividerHeight();
+        int firstVisiblePosition = getFirstVisiblePosition();
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            int position = firstVisiblePosition + i;
+
+            child.setVisibility(position == from ? INVISIBLE : VISIBLE);
+
+            float translation = 0;
+            if (from < targetPosition && position > from && position <= targetPosition) {
+                translation = -gap;
+            }
+            else if (targetPosition < from && position >= targetPosition && position < from) {
+                translation = gap;
+            }
+
+            // Only animate when the gap moves, or when a recycled cell scrolls into the
+            // gap, so that cells already on their way are not restarted on every event
+            if (targetChanged || (translation != 0 && child.getTranslationY() == 0)) {
+                animateTranslationY(child, translation);
+            }
+        }
+    }
+
+    /**
+     * Returns the position the dragged item would occupy if it were dropped with the top of
+     * the hover cell at hoverTop. Just like the swapping logic, an item is considered passed
+     * once the top of the hover cell crosses the top of that item's cell.
+     */
+    private int getTargetPositionForHover(int hoverTop, int fromPosition) {
+        int targetPosition = fromPosition;
+        int firstVisiblePosition = getFirstVisiblePosition();
+        for (int i = 0; i < getChildCount(); i++) {
+            int position = firstVisiblePosition + i;
+            int top = getChildAt(i).getTop();
+            if (position < fromPosition && hoverTop < top && position < targetPosition) {
+                targetPosition = position;
+            }
+            else if (position > fromPosition && hoverTop > top) {
+                targetPosition = position;
+            }
+        }
+        return targetPosition;
+    }
 
-                    int switchViewNewTop = switchView.getTop();
-                    int delta = switchViewStartTop - switchViewNewTop;
+    /**
+     * Animates the translation of the cell from its current value to translationY. The
+     * ObjectAnimator of a cell is kept in a tag of the cell and restarted to retarget it,
+     * since ViewPropertyAnimator is not available below API 14.
+     */
+    private void animateTranslationY(View child, float translationY) {
+        ObjectAnimator animator = (ObjectAnimator) child.getTag(R.id.translation_animator);
+        if (animator == null) {
+            animator = ObjectAnimator.ofFloat(child, "translationY", translationY);
+            animator.setDuration(MOVE_DURATION);
+            child.setTag(R.id.translation_animator, animator);
+        }
+        else {
+            animator.cancel();
+            animator.setFloatValues(translationY);
+        }
+        animator.start();
+    }
 
-                    switchView.setTranslationY(delta);
+    /**
+     * Stops the translation animation of the cell, if any, where it currently is
+     */
+    private void cancelTranslationAnimation(View child) {
+        Animator animator = (Animator) child.getTag(R.id.translation_animator);
+        if (animator != null) {
+            animator.cancel();
+        }
+    }
 
-                    ObjectAnimator animator = ObjectAnimator.ofFloat(switchView, "translationY", 0);
-                    animator.setDuration(MOVE_DURATION);
-                    animator.start();
+    /**
+     * Moves every cell back to where its layout put it and makes all of them visible
+     */
+    private void resetDragGap() {
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            cancelTranslationAnimation(child);
+            child.setTranslationY(0);
+            child.setVisibility(VISIBLE);
+        }
+        mMobileOriginalPosition = INVALID_POSITION;
+        mMobileTargetPosition = INVALID_POSITION;
+    }
 
-//                    ViewCompat.animate(switchView).translationY(0).setDuration(MOVE_DURATION).start();
+    /**
+     * Applies the data set changes that are left to be made when the hover cell is dropped,
+     * all with a single data set change: the move collected during a deferred drag, and the
+     * gathering of the other selected items around the dragged one for a block drag. Once the
+     * resulting layout has taken place, the gap translations are dropped, the displaced cells
+     * are animated from where they were on screen, and the hover cell is animated into the
+     * dragged item's new cell.
+     */
+    private void commitDrop() {
+        animateDisplacedCellsAfterLayout();
+        mIsDropPending = true;
+
+        boolean changed = false;
+        int from = mMobileOriginalPosition;
+        int to = mMobileTargetPosition;
+        if (mDeferDataChangesUntilDrop && from != INVALID_POSITION && to != INVALID_POSITION
+                && from != to) {
+            moveElement(mCheeseList, from, to);
+            changed = true;
+        }
+        if (mIsBlockDrag && gatherDragSelectionAroundMobileItem()) {
+            changed = true;
+        }
 
-                    return true;
+        if (changed) {
+            ((BaseAdapter) getAdapter()).notifyDataSetChanged();
+            if (mIsBlockDrag) {
+                notifyDragBlockMoved();
+            }
+            else {
+                notifyItemsMoved(to, 1);
+            }
+        }
+        invalidate();
+    }
+
+    /**
+     * Reports the block of selected items around the dragged item as moved, once they have
+     * been gathered by gatherDragSelectionAroundMobileItem
+     */
+    private void notifyDragBlockMoved() {
+        if (mDragBlockCount > 0) {
+            notifyItemsMoved(mDragBlockStart, mDragBlockCount);
+        }
+    }
+
+    private void notifyItemsMoved(int position, int count) {
+        if (mOnItemsMovedListener != null) {
+            mOnItemsMovedListener.onItemsMoved(position, count);
+        }
+    }
+
+    /**
+     * Moves the selected items other than the dragged one next to the dragged item, keeping
+     * the order in which they currently appear in the list. Selected items above the dragged
+     * item end up right above it, and the ones below right below it. Returns false if the
+     * selection already formed a contiguous block around the dragged item.
+     *
+     * Only the selected items are moved, each one removed and inserted again by index, so
+     * the rest of the list is neither copied nor rewritten. The bounds of the resulting
+     * block are kept for notifyDragBlockMoved.
+     */
+    private boolean gatherDragSelectionAroundMobileItem() {
+        ListAdapter adapter = getAdapter();
+        int count = mCheeseList.size();
+        int selectionCount = mSelectedItemIds.size();
+        if (mSelectedPositions.length < selectionCount) {
+            mSelectedPositions = new int[selectionCount];
+        }
+
+        // Finds the positions of the selected items, the dragged one included, in list order
+        int found = 0;
+        int mobileIndex = -1;
+        for (int i = 0; i < count && found < selectionCount; i++) {
+            long id = adapter.getItemId(i);
+            if (mSelectedItemIds.get((int) id)) {
+                if (id == mMobileItemId) {
+                    mobileIndex = found;
                 }
-            });
+                mSelectedPositions[found++] = i;
+            }
+        }
+        mDragBlockCount = 0;
+        if (mobileIndex < 0) {
+            return false;
+        }
 
+        mDragBlockStart = mSelectedPositions[0];
+        mDragBlockCount = found;
+        if (mSelectedPositions[found - 1] - mSelectedPositions[0] == found - 1) {
+            return false;
         }
+
+        /*
+         * The block grows from the dragged item outwards. Every move stays on one side of
+         * the items still to be moved, so the positions found above remain valid.
+         */
+        int mobilePosition = mSelectedPositions[mobileIndex];
+        int blockStart = mobilePosition;
+        for (int j = mobileIndex - 1; j >= 0; j--) {
+            moveElement(mCheeseList, mSelectedPositions[j], blockStart - 1);
+            blockStart--;
+        }
+        int blockEnd = mobilePosition;
+        for (int j = mobileIndex + 1; j < found; j++) {
+            moveElement(mCheeseList, mSelectedPositions[j], blockEnd + 1);
+            blockEnd++;
+        }
+        mDragBlockStart = blockStart;
+        return true;
     }
 
-    private void swapElements(ArrayList arrayList, int indexOne, int indexTwo) {
-        Object temp = arrayList.get(indexOne);
-        arrayList.set(indexOne, arrayList.get(indexTwo));
-        arrayList.set(indexTwo, temp);
+    /**
+     * Moves the item at fromPosition to toPosition, shifting the items in between by one,
+     * e.g. when the order is changed by a server push rather than by the user. If neither
+     * end of the move is on screen, this is a pure data set change. Otherwise, and if
+     * animated is set, the visible cells whose position changes are animated from their
+     * old to their new location once the layout has taken place. Only the visible cells are
+     * ever looked at, so moves within large lists stay cheap.
+     *
+     * @return false if a cell is currently being dragged or dropped, or a position is out
+     *         of range
+     */
+    public boolean moveItem(int fromPosition, int toPosition, boolean animated) {
+        if (mCellIsMobile || mIsWaitingForScrollFinish || mCheeseList == null) {
+            return false;
+        }
+
+        // The cell of the dropped item stays hidden until the hover cell has settled into it
+        if (mIsDropPending || mMobileItemId != INVALID_ID) {
+            return false;
+        }
+
+        int count = mCheeseList.size();
+        if (fromPosition < 0 || fromPosition >= count || toPosition < 0 || toPosition >= count) {
+            return false;
+        }
+        if (fromPosition == toPosition) {
+            return true;
+        }
+
+        int firstVisiblePosition = getFirstVisiblePosition();
+        int lastVisiblePosition = firstVisiblePosition + getChildCount() - 1;
+        boolean isFromVisible = fromPosition >= firstVisiblePosition
+                && fromPosition <= lastVisiblePosition;
+        boolean isToVisible = toPosition >= firstVisiblePosition
+                && toPosition <= lastVisiblePosition;
+        boolean shouldAnimate = animated && (isFromVisible || isToVisible);
+
+        if (shouldAnimate) {
+            animateDisplacedCellsAfterLayout();
+        }
+
+        moveElement(mCheeseList, fromPosition, toPosition);
+        ((BaseAdapter) getAdapter()).notifyDataSetChanged();
+        notifyItemsMoved(toPosition, 1);
+        return true;
+    }
+
+    /**
+     * Moves the element at fromIndex to toIndex, shifting the elements in between by one
+     */
+    private void moveElement(List<String> list, int fromIndex, int toIndex) {
+        list.add(toIndex, list.remove(fromIndex));
     }
 
     /**
-     * Determines whether this listview is in a scrolling state invoked by the fact that
-     * the hover cell is out of the bounds of the listview
+     * Starts the autoscroll if the hover cell is within the edge zone at the top or bottom
+     * of the listview
      */
     private void handleMobileCellScroll() {
-        mIsMobileScrolling = handleMobileCellScroll(mHoverCellCurrentBounds);
+        handleMobileCellScroll(mHoverCellCurrentBounds);
     }
 
     /**
-     * This method is in charge of determining if the hover cell is above or below
-     * the bounds of the listview. If so, the listview does an appropriate
-     * upward or downward smooth scroll so as to reveal new items
+     * This method is in charge of determining if the hover cell is within the edge zone at
+     * the top or bottom of the listview. If so, the frame driven autoscroll is started (if it
+     * is not running already) so as to reveal new items
      */
     public boolean handleMobileCellScroll(Rect rect) {
+        if (getAutoScrollSpeed(rect) == 0) {
+            return false;
+        }
+
+        if (!mIsAutoScrollScheduled) {
+            mIsAutoScrollScheduled = true;
+            mLastAutoScrollTime = AnimationUtils.currentAnimationTimeMillis();
+            mAutoScrollRemainder = 0;
+            ViewCompat.postOnAnimation(this, mAutoScrollRunnable);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the speed, in pixels per second, at which the listview should scroll for the
+     * hover cell bounds passed in. The speed is proportional to how deep the hover cell is
+     * into the edge zone, and is negative when scrolling up. A speed of 0 is returned if the
+     * hover cell is outside of both edge zones or if the list cannot scroll any further.
+     */
+    private float getAutoScrollSpeed(Rect rect) {
         int offset = computeVerticalScrollOffset();
         int height = getHeight();
         int extent = computeVerticalScrollExtent();
         int range = computeVerticalScrollRange();
-        int hoverViewTop = rect.top;
-        int hoverHeight = rect.height();
 
-        if (hoverViewTop <= 0 && offset > 0) {
+        int depthAtTop = mAutoScrollEdgeZone - rect.top;
+        if (depthAtTop > 0 && offset > 0) {
             // Scroll up
-            smoothScrollBy(-mSmoothScrollAmountAtEdge, 0);
-            return true;
+            return -mAutoScrollMaxSpeed * Math.min(1f, depthAtTop / (float) mAutoScrollEdgeZone);
         }
 
-        if (hoverViewTop + hoverHeight >= height && (offset + extent) < range) {
+        int depthAtBottom = rect.bottom - (height - mAutoScrollEdgeZone);
+        if (depthAtBottom > 0 && (offset + extent) < range) {
             // Scroll down
-            smoothScrollBy(mSmoothScrollAmountAtEdge, 0);
-            return true;
+            return mAutoScrollMaxSpeed * Math.min(1f, depthAtBottom / (float) mAutoScrollEdgeZone);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Scrolls the list content by the given number of pixels right away
+     */
+    private void scrollListByPixels(int y) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            scrollListBy(y);
+        }
+        else {
+            smoothScrollBy(y, 0);
         }
+    }
 
-        return false;
+    private void stopAutoScroll() {
+        removeCallbacks(mAutoScrollRunnable);
+        mIsAutoScrollScheduled = false;
     }
 
-    public void setCheeseList(ArrayList<String> cheeseList) {
+    /**
+     * Runs once per animation frame while the hover cell is in an edge zone. The distance
+     * scrolled is the current speed scaled by the time elapsed since the previous frame, so
+     * the scroll speed does not depend on the frame rate. Once the hover cell leaves the edge
+     * zone, or the drag ends, the callback stops rescheduling itself.
+     */
+    private final Runnable mAutoScrollRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mIsAutoScrollScheduled = false;
+            if (!mCellIsMobile) {
+                return;
+            }
+
+            float speed = getAutoScrollSpeed(mHoverCellCurrentBounds);
+            if (speed == 0) {
+                return;
+            }
+
+            long now = AnimationUtils.currentAnimationTimeMillis();
+            long frameTime = Math.min(now - mLastAutoScrollTime, AUTO_SCROLL_MAX_FRAME_TIME);
+            mLastAutoScrollTime = now;
+
+            mAutoScrollRemainder += speed * frameTime / 1000f;
+            int scrollBy = (int) mAutoScrollRemainder;
+            mAutoScrollRemainder -= scrollBy;
+
+            if (scrollBy != 0) {
+                scrollListByPixels(scrollBy);
+                handleCellSwitch();
+            }
+
+            mIsAutoScrollScheduled = true;
+            ViewCompat.postOnAnimation(DynamicListView.this, this);
+        }
+    };
+
+    public void setCheeseList(List<String> cheeseList) {
         mCheeseList = cheeseList;
     }
 
     /**
-     * This TypeEvaluator is used to animate the BitmapDrawable back to its
+     * Sets the listener notified after every change this listview makes to the order of
+     * the backing list, whether it comes from a drag, a drop or a call to moveItem
+     */
+    public void setOnItemsMovedListener(OnItemsMovedListener onItemsMovedListener) {
+        mOnItemsMovedListener = onItemsMovedListener;
+    }
+
+    /**
+     * If set, the cells are only translated while the hover cell is being dragged and the
+     * backing list is mutated once, with a single move, when the hover cell is dropped.
+     * This avoids a data set change and a full layout every time a cell is crossed. The
+     * mode cannot be changed while a cell is being dragged.
+     */
+    public void setDeferDataChangesUntilDrop(boolean deferDataChanges) {
+        if (!mCellIsMobile) {
+            mDeferDataChangesUntilDrop = deferDataChanges;
+        }
+    }
+
+    public boolean isDeferringDataChangesUntilDrop() {
+        return mDeferDataChangesUntilDrop;
+    }
+
+    /**
+     * If set, the hover cell is drawn from a retained, detached row view bound to the
+     * dragged item instead of a bitmap screenshot of the selected cell. This avoids the
+     * bitmap allocation on every drag start and keeps the hover cell up to date if the item
+     * changes mid-drag. The mode cannot be changed while a cell is being dragged.
+     */
+    public void setUseLiveHoverCell(boolean useLiveHoverCell) {
+        if (!mCellIsMobile) {
+            mUseLiveHoverCell = useLiveHoverCell;
+        }
+    }
+
+    public boolean isUsingLiveHoverCell() {
+        return mUseLiveHoverCell;
+    }
+
+    /**
+     * If set, the move events received while a cell is being dragged are only recorded, and
+     * the drag (hover cell movement, cell switching and edge scrolling) is handled once per
+     * animation frame for the most recent touch position. On touch panels reporting faster
+     * than the display refreshes, this avoids redundant switch and scroll checks.
+     */
+    public void setCoalesceTouchMoves(boolean coalesceTouchMoves) {
+        mCoalesceTouchMoves = coalesceTouchMoves;
+        if (!coalesceTouchMoves) {
+            flushDragFrame();
+        }
+    }
+
+    public boolean isCoalescingTouchMoves() {
+        return mCoalesceTouchMoves;
+    }
+
+    /**
+     * Sets the id of the view, within each cell, acting as a drag handle. A touch that starts
+     * on the handle begins dragging the cell as soon as it moves past the touch slop, without
+     * waiting for the long press timeout. Long pressing anywhere on a cell still starts a drag
+     * as well. If the cell view itself carries the id, the whole cell acts as the handle.
+     * Pass 0 to disable drag handles.
+     */
+    public void setDragHandleId(int dragHandleId) {
+        mDragHandleId = dragHandleId;
+    }
+
+    public int getDragHandleId() {
+        return mDragHandleId;
+    }
+
+    /**
+     * Adds the item with the given stable id to, or removes it from, the drag selection.
+     * Dragging any selected item while more than one is selected drags the whole selection
+     * as a block: the dragged cell is shown with the size of the block, and on drop all the
+     * selected items are moved next to it with a single data set change.
+     */
+    public void setItemSelectedForDrag(long itemId, boolean selected) {
+        if (mCellIsMobile) {
+            return;
+        }
+        if (selected) {
+            mSelectedItemIds.put((int) itemId, true);
+        }
+        else {
+            mSelectedItemIds.delete((int) itemId);
+        }
+        invalidate();
+    }
+
+    public boolean isItemSelectedForDrag(long itemId) {
+        return mSelectedItemIds.get((int) itemId);
+    }
+
+    public int getDragSelectionCount() {
+        return mSelectedItemIds.size();
+    }
+
+    public void clearDragSelection() {
+        if (!mCellIsMobile) {
+            mSelectedItemIds.clear();
+            invalidate();
+        }
+    }
+
+    /**
+     * This TypeEvaluator is used to animate the hover cell back to its
      * final location when the user lifts his finger by modifying the
-     * BitmapDrawable's bounds.
+     * hover cell's bounds.
      */
     private final static TypeEvaluator<Rect> sBoundEvaluator = new TypeEvaluator<Rect>() {
         public Rect evaluate(float fraction, Rect startValue, Rect endValue) {
@@ -486,6 +1414,81 @@ public class DynamicListView extends ListView {
     };
 
 
+    /**
+     * Creates and sets up the hover cell for the item at position. Returns false if there
+     * is no visible item at that position.
+     */
+    private boolean startDrag(int position) {
+        int itemNum = position - getFirstVisiblePosition();
+        if (position == INVALID_POSITION || itemNum < 0 || itemNum >= getChildCount()) {
+            return false;
+        }
+
+        mTotalOffset = 0;
+
+        View selectedView = getChildAt(itemNum);
+        mMobileItemId = getAdapter().getItemId(position);
+        if (mUseLiveHoverCell) {
+            prepareLiveHoverCell(selectedView, position);
+        }
+        else {
+            mHoverCell = getAndAddHoverView(selectedView);
+        }
+        selectedView.setVisibility(INVISIBLE);
+
+        mCellIsMobile = true;
+        mMobileOriginalPosition = position;
+        mMobileTargetPosition = position;
+
+        int selectionCount = mSelectedItemIds.size();
+        mIsBlockDrag = selectionCount > 1 && mSelectedItemIds.get((int) mMobileItemId);
+        if (mIsBlockDrag) {
+            mBlockDragLabel = String.valueOf(selectionCount);
+        }
+
+        updateNeighborViewsForID(mMobileItemId);
+
+        return true;
+    }
+
+    /**
+     * Returns true if (x, y) lies within the drag handle of the cell under it
+     */
+    private boolean isOnDragHandle(int x, int y) {
+        int position = pointToPosition(x, y);
+        if (position == INVALID_POSITION) {
+            return false;
+        }
+
+        View cell = getChildAt(position - getFirstVisiblePosition());
+        View handle = cell.findViewById(mDragHandleId);
+        if (handle == null || handle.getVisibility() != VISIBLE) {
+            return false;
+        }
+
+        handle.getDrawingRect(mDragHandleRect);
+        offsetDescendantRectToMyCoords(handle, mDragHandleRect);
+        return mDragHandleRect.contains(x, y);
+    }
+
+    /**
+     * Starts dragging the cell whose drag handle was pressed, and cancels the listview's own
+     * handling of the gesture (pressed state, pending tap and long press) so that the drag
+     * takes over from here
+     */
+    private void startDragFromHandle(MotionEvent ev) {
+        if (!startDrag(pointToPosition(mDownX, mDownY))) {
+            return;
+        }
+
+        getParent().requestDisallowInterceptTouchEvent(true);
+
+        MotionEvent cancelEvent = MotionEvent.obtain(ev);
+        cancelEvent.setAction(MotionEvent.ACTION_CANCEL);
+        super.onTouchEvent(cancelEvent);
+        cancelEvent.recycle();
+    }
+
     /**
      * Listens for long clicks on any items in the listview. When a cell has been selected,
      * the hover cell is created and set up.
@@ -494,21 +1497,21 @@ public class DynamicListView extends ListView {
             new OnItemLongClickListener() {
                 @Override
                 public boolean onItemLongClick(AdapterView<?> parent, View view, int pos, long id) {
-                    mTotalOffset = 0;
-
-                    int position = pointToPosition(mDownX, mDownY);
-                    int itemNum = position - getFirstVisiblePosition();
-
-                    View selectedView = getChildAt(itemNum);
-                    mMobileItemId = getAdapter().getItemId(position);
-                    mHoverCell = getAndAddHoverView(selectedView);
-                    selectedView.setVisibility(INVISIBLE);
-
-                    mCellIsMobile = true;
-
-                    updateNeighborViewsForID(mMobileItemId);
+                    return startDrag(pointToPosition(mDownX, mDownY));
+                }
+            };
 
-                    return true;
+    /**
+     * Cells that scroll out of the list during a deferred drag may still be translated to
+     * form the gap. They are reset here so that they come back untouched when reused.
+     */
+    private RecyclerListener mRecyclerListener =
+            new RecyclerListener() {
+                @Override
+                public void onMovedToScrapHeap(View view) {
+                    cancelTranslationAnimation(view);
+                    view.setTranslationY(0);
+                    view.setVisibility(VISIBLE);
                 }
             };
 
@@ -547,18 +1550,15 @@ public class DynamicListView extends ListView {
                 }
 
                 /**
-                 * This method is in charge of invoking 1 of 2 actions. Firstly, if the listview
-                 * is in a state of scrolling invoked by the hover cell being outside the bounds
-                 * of the listview, then this scrolling event is continued. Secondly, if the hover
-                 * cell has already been released, this invokes the animation for the hover cell
-                 * to return to its correct position after the listview has entered an idle scroll
-                 * state.
+                 * If the hover cell has already been released while the listview was still
+                 * scrolling, this invokes the animation for the hover cell to return to its
+                 * correct position after the listview has entered an idle scroll state. The
+                 * edge scrolling itself is driven by mAutoScrollRunnable and does not need
+                 * to be continued from here.
                  */
                 private void isScrollCompleted() {
                     if (mCurrentVisibleItemCount > 0 && mCurrentScrollState == SCROLL_STATE_IDLE) {
-                        if (mCellIsMobile && mIsMobileScrolling) {
-                            handleMobileCellScroll();
-                        } else if (mIsWaitingForScrollFinish) {
+                        if (mIsWaitingForScrollFinish) {
                             touchEventsEnded();
                         }
                     }
@@ -1,34 +1,79 @@
 package com.desmond.allaboutlistview.ListViewDraggingAnimation;
 
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.ActionBarActivity;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
+import android.widget.AdapterView;
 import android.widget.ListView;
 
-import com.desmond.allaboutlistview.Cheeses;
+import com.desmond.allaboutlistview.PersistentList;
 import com.desmond.allaboutlistview.R;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class ListViewDraggingActivity extends ActionBarActivity {
 
+    private CheeseOrderStore mOrderStore;
+    private AsyncTask<Void, Void, ArrayList<String>> mLoadOrderTask;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_list_view_dragging);
 
-        ArrayList<String> mCheeseList = new ArrayList<String>();
-        for (int i = 0; i < Cheeses.sCheeseStrings.length; ++i) {
-            mCheeseList.add(Cheeses.sCheeseStrings[i]);
-        }
+        // The cheeses are shown in the order they were last left in, which is read from
+        // the database on the store's own thread, after the writes of earlier instances
+        mOrderStore = CheeseOrderStore.getInstance(this);
+        mLoadOrderTask = new AsyncTask<Void, Void, ArrayList<String>>() {
+            @Override
+            protected ArrayList<String> doInBackground(Void... params) {
+                return mOrderStore.loadOrder();
+            }
 
+            @Override
+            protected void onPostExecute(ArrayList<String> cheeseList) {
+                if (!isFinishing() && !isCancelled()) {
+                    setUpListView(new PersistentList<String>(cheeseList));
+                }
+            }
+        };
+        mLoadOrderTask.executeOnExecutor(mOrderStore.getExecutor());
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // A load finishing from now on must not set up the destroyed activity
+        mLoadOrderTask.cancel(false);
+    }
+
+    private void setUpListView(final List<String> mCheeseList) {
         StableArrayAdapter adapter = new StableArrayAdapter(this, R.layout.text_view, mCheeseList);
-        DynamicListView listView = (DynamicListView) findViewById(R.id.listview);
+        final DynamicListView listView = (DynamicListView) findViewById(R.id.listview);
 
         listView.setCheeseList(mCheeseList);
         listView.setAdapter(adapter);
         listView.setChoiceMode(ListView.CHOICE_MODE_SINGLE);
+
+        // Tapping a cell adds it to (or removes it from) the selection that is dragged as a block
+        listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                listView.setItemSelectedForDrag(id, !listView.isItemSelectedForDrag(id));
+            }
+        });
+
+        // Only the items that moved get new order keys, which are written in the background
+        listView.setOnItemsMovedListener(new OnItemsMovedListener() {
+            @Override
+            public void onItemsMoved(int position, int count) {
+                mOrderStore.onItemsMoved(mCheeseList, position, count);
+            }
+        });
     }
 
 
@@ -0,0 +1,11 @@
+package com.desmond.allaboutlistview.ListViewDraggingAnimation;
+
+/**
+ * This listener is notified by DynamicListView every time it changes the order of its
+ * items. The moved items always end up as a contiguous run starting at position, and
+ * every other item keeps its relative order, so persisting the new order only requires
+ * the moved items to be written.
+ */
+public interface OnItemsMovedListener {
+    public void onItemsMoved(int position, int count);
+}
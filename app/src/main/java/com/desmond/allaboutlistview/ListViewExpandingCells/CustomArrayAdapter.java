@@ -12,6 +12,7 @@ import android.support.v4.app.FragmentActivity;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewStub;
 import android.widget.AbsListView;
 import android.widget.ArrayAdapter;
 import android.widget.ImageView;
@@ -40,7 +41,9 @@ public class CustomArrayAdapter extends ArrayAdapter<ExpandableListItem> {
 
     /**
      * Populates the item in the listview cell with the appropriate data. This method
-     * sets the thumbnail image, the title, and the extra text. This method also updates
+     * sets the thumbnail image, the title, and the extra text. The extra content is only
+     * inflated once the cell is first expanded, and is then kept with the recycled view,
+     * so the extra text is only set on the views that have it. This method also updates
      * the layout parameters of the item's view so that the image and title are centered
      * in the bounds of the collapsed view, and such that the extra text is not displayed
      * in the collapsed state of the cell.
@@ -67,30 +70,48 @@ public class CustomArrayAdapter extends ArrayAdapter<ExpandableListItem> {
         imgView.setImageBitmap(getCroppedBitmap(BitmapFactory.decodeResource(getContext()
                 .getResources(), object.getImgResource(), null)));
 
-        // TextView that belongs to the expanded view
-        TextView textView = (TextView)convertView.findViewById(R.id.text_view);
-        textView.setText(object.getText());
-
         // Parent view of the entire ListView item
         convertView.setLayoutParams(new AbsListView.LayoutParams(
                 AbsListView.LayoutParams.MATCH_PARENT,
                 AbsListView.LayoutParams.WRAP_CONTENT));
 
-        // Expandable view
-        ExpandingLayout expandingLayout = (ExpandingLayout) convertView.findViewById(
-                R.id.expanding_layout);
-        expandingLayout.setExpandedHeight(object.getExpandedHeight());
-        expandingLayout.setSizeChangedListener(object);
+        // Expandable view, left as a stub until the cell is expanded
+        if (object.isExpanded() || convertView.findViewById(R.id.expanding_layout) != null) {
+            ExpandingLayout expandingLayout = ensureExpandingLayout(convertView, object);
 
-        if (!object.isExpanded()) {
-            expandingLayout.setVisibility(View.GONE);
-        } else {
-            expandingLayout.setVisibility(View.VISIBLE);
+            if (!object.isExpanded()) {
+                expandingLayout.setVisibility(View.GONE);
+            } else {
+                expandingLayout.setVisibility(View.VISIBLE);
+            }
         }
 
         return convertView;
     }
 
+    /**
+     * Returns the expandable view of the given listview cell, inflating it first if the
+     * cell has never been expanded, and binds it to the given item. The view is inflated
+     * with the visibility of its layout, so callers are expected to set it.
+     */
+    public static ExpandingLayout ensureExpandingLayout(View convertView,
+                                                        ExpandableListItem object) {
+        ExpandingLayout expandingLayout = (ExpandingLayout) convertView.findViewById(
+                R.id.expanding_layout);
+        if (expandingLayout == null) {
+            ViewStub stub = (ViewStub) convertView.findViewById(R.id.expanding_layout_stub);
+            expandingLayout = (ExpandingLayout) stub.inflate();
+        }
+
+        // TextView that belongs to the expanded view
+        TextView textView = (TextView) expandingLayout.findViewById(R.id.text_view);
+        textView.setText(object.getText());
+
+        expandingLayout.setExpandedHeight(object.getExpandedHeight());
+        expandingLayout.setSizeChangedListener(object);
+        return expandingLayout;
+    }
+
     /**
      * Crops a circle out of the thumbnail photo
      */
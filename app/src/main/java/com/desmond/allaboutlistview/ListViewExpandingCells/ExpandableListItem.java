@@ -4,7 +4,8 @@ package com.desmond.allaboutlistview.ListViewExpandingCells;
  * This custom object is used to populate the list adapter. It contains a reference
  * to an image, title, and the extra text to be displayed. Furthermore, it keeps track
  * of the current state (collapsed/expanded) of the corresponding item in the list,
- * as well as store the height of the cell in its collapsed state.
+ * as well as store the height of the cell in its collapsed state and the height
+ * of its extra content, along with the width that height was computed for.
  */
 public class ExpandableListItem implements OnSizeChangedListener {
 
@@ -14,6 +15,7 @@ public class ExpandableListItem implements OnSizeChangedListener {
     private int mImgResource;
     private int mCollapsedHeight;
     private int mExpandedHeight;
+    private int mExpandedWidth;
 
     public ExpandableListItem(String title, int imgResource, int collapsedHeight, String text) {
         mTitle = title;
@@ -22,6 +24,7 @@ public class ExpandableListItem implements OnSizeChangedListener {
         mIsExpanded = false;
         mText = text;
         mExpandedHeight = -1;
+        mExpandedWidth = -1;
     }
 
     public boolean isExpanded() {
@@ -64,8 +67,21 @@ public class ExpandableListItem implements OnSizeChangedListener {
         mExpandedHeight = expandedHeight;
     }
 
+    /**
+     * Returns the height of the extra content when it is laid out with the given width,
+     * or -1 if it is not known for that width yet
+     */
+    public int getExpandedHeightForWidth(int width) {
+        return width == mExpandedWidth ? mExpandedHeight : -1;
+    }
+
+    public void setExpandedHeightForWidth(int width, int expandedHeight) {
+        mExpandedWidth = width;
+        mExpandedHeight = expandedHeight;
+    }
+
     @Override
-    public void onSizeChanged(int newHeight) {
-        setExpandedHeight(newHeight);
+    public void onSizeChanged(int newWidth, int newHeight) {
+        setExpandedHeightForWidth(newWidth, newHeight);
     }
 }
@@ -0,0 +1,149 @@
+package com.desmond.allaboutlistview.ListViewExpandingCells;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ListAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import com.desmond.allaboutlistview.R;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the height of the extra content of every ExpandableListItem ahead of time, so
+ * that the final height of a cell is known before it is first expanded.
+ *
+ * The paint and paddings of the extra text are taken from an inflated row on the main
+ * thread. The text of every item is then laid out with a StaticLayout for the width the
+ * extra content gets in the ListView, on a worker thread, and the heights are handed back
+ * to the items on the main thread. Items sharing the same text are only laid out once per
+ * width. A computation started for an older data set or width is dropped.
+ *
+ * All the computations run on the same executor, one after the other, so the cache never
+ * sees two of them at once. Its single thread goes away after a second without work.
+ */
+public class ExpandedHeightCalculator {
+
+    private final ListView mListView;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor mExecutor = new ThreadPoolExecutor(0, 1,
+            1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+
+    /** Only accessed on the worker thread */
+    private final HashMap<String, Integer> mHeightsByText = new HashMap<String, Integer>();
+    private int mCachedWidth = -1;
+
+    /** Only accessed on the main thread */
+    private int mGeneration = 0;
+
+    public ExpandedHeightCalculator(ListView listView) {
+        mListView = listView;
+    }
+
+    /**
+     * Starts computing the expanded heights of all the items of the ListView's adapter for
+     * the current width of the ListView. Must be called on the main thread.
+     */
+    public void computeExpandedHeights() {
+        final int generation = ++mGeneration;
+
+        ListAdapter adapter = mListView.getAdapter();
+        int listWidth = mListView.getWidth();
+        if (adapter == null || adapter.getCount() == 0 || listWidth == 0) {
+            return;
+        }
+
+        // Measures the parts of a row surrounding the extra text
+        LayoutInflater inflater = LayoutInflater.from(mListView.getContext());
+        ViewGroup row = (ViewGroup) inflater.inflate(
+                R.layout.expandable_list_view_item, mListView, false);
+        View expandingLayout = inflater.inflate(
+                R.layout.expandable_list_view_item_content, row, false);
+        TextView textView = (TextView) expandingLayout.findViewById(R.id.text_view);
+
+        final int contentWidth = listWidth
+                - mListView.getPaddingLeft() - mListView.getPaddingRight()
+                - row.getPaddingLeft() - row.getPaddingRight();
+        final int textWidth = contentWidth
+                - expandingLayout.getPaddingLeft() - expandingLayout.getPaddingRight()
+                - textView.getCompoundPaddingLeft() - textView.getCompoundPaddingRight();
+        final int verticalPadding = expandingLayout.getPaddingTop()
+                + expandingLayout.getPaddingBottom()
+                + textView.getCompoundPaddingTop() + textView.getCompoundPaddingBottom();
+        final TextPaint paint = new TextPaint(textView.getPaint());
+        if (textWidth <= 0) {
+            return;
+        }
+
+        final List<ExpandableListItem> items = new ArrayList<ExpandableListItem>();
+        final List<String> texts = new ArrayList<String>();
+        for (int i = 0; i < adapter.getCount(); i++) {
+            ExpandableListItem item = (ExpandableListItem) adapter.getItem(i);
+            if (item.getExpandedHeightForWidth(contentWidth) < 0) {
+                items.add(item);
+                texts.add(item.getText());
+            }
+        }
+        if (items.isEmpty()) {
+            return;
+        }
+
+        // Computations still waiting to run are for an older data set or width
+        mExecutor.getQueue().clear();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mCachedWidth != textWidth) {
+                    mHeightsByText.clear();
+                    mCachedWidth = textWidth;
+                }
+
+                final int[] heights = new int[texts.size()];
+                for (int i = 0; i < heights.length; i++) {
+                    String text = texts.get(i);
+                    Integer height = mHeightsByText.get(text);
+                    if (height == null) {
+                        StaticLayout layout = new StaticLayout(text, paint, textWidth,
+                                Layout.Alignment.ALIGN_CENTER, 1.0f, 0.0f, true);
+                        height = layout.getHeight() + verticalPadding;
+                        mHeightsByText.put(text, height);
+                    }
+                    heights[i] = height;
+                }
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mGeneration) {
+                            return;
+                        }
+                        for (int i = 0; i < heights.length; i++) {
+                            items.get(i).setExpandedHeightForWidth(contentWidth, heights[i]);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drops the pending results and the computations that have not started yet. A running
+     * computation is left to finish, and its result is dropped as well.
+     */
+    public void release() {
+        mGeneration++;
+        mExecutor.getQueue().clear();
+    }
+}
@@ -47,7 +47,7 @@ public class ExpandingLayout extends RelativeLayout {
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         mExpandedHeight = h;
         // Notifies the list data object corresponding to this layout that its size has changed
-        mSizeChangedListener.onSizeChanged(h);
+        mSizeChangedListener.onSizeChanged(w, h);
     }
 
     public int getExpandedHeight() {
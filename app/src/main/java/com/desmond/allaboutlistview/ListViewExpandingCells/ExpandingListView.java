@@ -2,23 +2,25 @@ package com.desmond.allaboutlistview.ListViewExpandingCells;
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
-import android.animation.PropertyValuesHolder;
+import android.animation.ValueAnimator;
 import android.content.Context;
+import android.database.DataSetObserver;
 import android.graphics.Canvas;
 import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewTreeObserver;
 import android.widget.AdapterView;
+import android.widget.ListAdapter;
 import android.widget.ListView;
 
 import com.desmond.allaboutlistview.R;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -29,11 +31,55 @@ public class ExpandingListView extends ListView {
 
     public static final String TAG = ExpandingListView.class.getSimpleName();
 
-    private boolean mShouldRemoveObserver = false;
-
+    /* The cells animated off the screen, and their positions */
     private List<View> mViewsToDraw = new ArrayList<>();
+    private int[] mViewsToDrawPositions = new int[0];
+
+    /*
+     * The cells on the screen before the layout following a toggle, their positions
+     * and bounds, ordered by position. The arrays are reused and only grow.
+     */
+    private View[] mOldViews = new View[0];
+    private int[] mOldPositions = new int[0];
+    private int[] mOldTops = new int[0];
+    private int[] mOldBottoms = new int[0];
+    private int[] mOldTargetHeights = new int[0];
+    private boolean[] mIsOldViewPinned = new boolean[0];
+    private int mOldCount;
+
+    private final int[] mTranslations = new int[2];
+
+    /*
+     * The cells whose bounds are animated, and their start and end bounds. A single
+     * animator moves all of them, and is restarted by every toggle. The arrays are reused
+     * and only grow.
+     */
+    private View[] mAnimatedViews = new View[0];
+    private int[] mStartTops = new int[0];
+    private int[] mStartBottoms = new int[0];
+    private int[] mEndTops = new int[0];
+    private int[] mEndBottoms = new int[0];
+    private int mAnimatedCount;
+
+    private final ValueAnimator mBoundsAnimator = ValueAnimator.ofFloat(0, 1);
+    private boolean mIsAnimatingBounds = false;
+    private boolean mIsLayoutPending = false;
+
+    /*
+     * The items toggled since the cells last stopped, and the extra content of their
+     * views, which is faded by an animator kept in a tag of the extra content
+     */
+    private final ArrayList<ExpandableListItem> mToggledItems = new ArrayList<>();
+    private final ArrayList<View> mToggledLayouts = new ArrayList<>();
+
+    private boolean mIsAccordionEnabled = false;
+    private ExpandableListItem mLastExpandedItem;
+
+    private int mTouchSlop = 0;
+    private int mDownY = -1;
 
-    private int[] mTranslate;
+    private ExpandedHeightCalculator mHeightCalculator;
+    private ListAdapter mObservedAdapter;
 
     public ExpandingListView(Context context) {
         super(context);
@@ -52,449 +98,611 @@ public class ExpandingListView extends ListView {
 
     private void init() {
         setOnItemClickListener(mItemClickListener);
+        mTouchSlop = ViewConfiguration.get(getContext()).getScaledTouchSlop();
+        mHeightCalculator = new ExpandedHeightCalculator(this);
+
+        mBoundsAnimator.addUpdateListener(mBoundsUpdateListener);
+        mBoundsAnimator.addListener(mBoundsAnimatorListener);
+    }
+
+    /**
+     * Computes the expanded heights of the items of the new adapter in the background,
+     * and again whenever its data changes
+     */
+    @Override
+    public void setAdapter(ListAdapter adapter) {
+        if (mObservedAdapter != null) {
+            mObservedAdapter.unregisterDataSetObserver(mDataSetObserver);
+        }
+        super.setAdapter(adapter);
+        mObservedAdapter = adapter;
+        if (adapter != null) {
+            adapter.registerDataSetObserver(mDataSetObserver);
+        }
+        mHeightCalculator.computeExpandedHeights();
+    }
+
+    private DataSetObserver mDataSetObserver = new DataSetObserver() {
+        @Override
+        public void onChanged() {
+            mHeightCalculator.computeExpandedHeights();
+        }
+    };
+
+    /**
+     * The expanded heights depend on the width of the cells, so they are computed again
+     * whenever the width of the ListView changes
+     */
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (w != oldw) {
+            mHeightCalculator.computeExpandedHeights();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (getWidth() > 0) {
+            mHeightCalculator.computeExpandedHeights();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mHeightCalculator.release();
+        super.onDetachedFromWindow();
     }
 
     /**
      * Listens for item clicks and expands or collapses the selected view depending on
-     * its current state.
+     * its current state. Clicks are handled while other cells are still animating.
      */
     private OnItemClickListener mItemClickListener = new OnItemClickListener() {
         @Override
         public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-            ExpandableListItem viewObject =
-                    (ExpandableListItem) getItemAtPosition(getPositionForView(view));
-
-            if (!viewObject.isExpanded()) {
-                // Not expanded yet
-                expandView(view);
-            }
-            else {
-                collapseView(view);
-            }
+            toggleView(view, position);
         }
     };
 
     /**
-     * This method expands the view that was clicked and animates all the views
-     * around it to make room for the expanding view. There are several steps
-     * required to do this which are outlined below.
-     * <p/>
-     * 1. Store the current top and bottom bounds of each visible item in the
-     * listview.
-     * 2. Update the layout parameters of the selected view. In the
-     * context of this method, the view should be originally collapsed and set
-     * to some custom height. The layout parameters are updated so as to wrap
-     * the content of the additional text that is to be displayed.
-     * <p/>
-     * After invoking a layout to take place, the listview will order all the
-     * items such that there is space for each view. This layout will be
-     * independent of what the bounds of the items were prior to the layout so
-     * two pre-draw passes will be made. This is necessary because after the
-     * layout takes place, some views that were visible before the layout may
-     * now be off bounds but a reference to these views is required so the
-     * animation completes as intended.
+     * In accordion mode, expanding a cell collapses the cell that was expanded last, in
+     * the same pass, so at most one cell is expanded at a time.
+     */
+    public void setAccordionEnabled(boolean isAccordionEnabled) {
+        mIsAccordionEnabled = isAccordionEnabled;
+    }
+
+    public boolean isAccordionEnabled() {
+        return mIsAccordionEnabled;
+    }
+
+    /**
+     * This method expands or collapses the view that was clicked and animates all
+     * the views around it to make room for it. There are several steps required
+     * to do this which are outlined below.
      * <p/>
-     * 3. The first predraw pass will set the bounds of all the visible items to
-     * their original location before the layout took place and then force
-     * another layout. Since the bounds of the cells cannot be set directly, the
-     * method setSelectionFromTop can be used to achieve a very similar effect.
-     * 4. The expanding view's bounds are animated to what the final values
-     * should be from the original bounds.
-     * 5. The bounds above the expanding view are animated upwards while
-     * the bounds below the expanding view are animated downwards.
-     * 6. The extra text is faded in as its contents become
-     * visible throughout the animation process.
+     * 1. Store the current top and bottom bounds of each cell on the screen,
+     * including the cells still being animated off the screen by an earlier toggle.
+     * If the cells are being animated, the animation is cancelled, so they are
+     * retargeted from the bounds they are currently drawn at.
+     * 2. Update the expanded state of the item right away and the layout of the
+     * selected view (see setCellExpanded). In accordion mode, the cell expanded
+     * last is collapsed as well.
+     * 3. Compute the final bounds of the selected view. The height of its extra
+     * content is known ahead of time (see ExpandedHeightCalculator), so the
+     * translations of its top and bottom bounds can be computed before any layout
+     * takes place.
+     * 4. Offset the listview with setSelectionFromTop, such that the layout that
+     * follows places the selected view at its final position and renders all the
+     * cells that will be visible after the animation.
      * <p/>
-     * It is important to note that the listview is disabled during the
-     * animation because the scrolling behaviour is unpredictable if the bounds
-     * of the items within the listview are not constant during the scroll.
+     * A single predraw pass then takes place after that layout, in which all the
+     * cells are moved back to their original bounds and animated to their final
+     * ones (see mToggledCellsPreDrawListener).
      */
-    private void expandView(final View view) {
-        final ExpandableListItem viewObject = (ExpandableListItem) getItemAtPosition(
-                getPositionForView(view));
+    private void toggleView(View view, int position) {
+        ExpandableListItem viewObject = (ExpandableListItem) getItemAtPosition(position);
+        boolean isExpanding = !viewObject.isExpanded();
+
+        /*
+         * Several toggles before the next layout share the bounds stored by the
+         * first one, as the cells have not moved yet.
+         */
+        if (!mIsLayoutPending) {
+            cancelBoundsAnimation();
+            storeOldBounds();
+        }
 
-        /* Store the original top and bottom bounds of all the cells. */
-        final int oldTop = view.getTop();
-        final int oldBottom = view.getBottom();
+        int top = view.getTop();
+        int bottom = view.getBottom();
 
-        final HashMap<View, int[]> oldCoordinates = new HashMap<>();
+        if (isExpanding && mIsAccordionEnabled && mLastExpandedItem != null
+                && mLastExpandedItem != viewObject && mLastExpandedItem.isExpanded()) {
+            View expandedView = getViewForItem(mLastExpandedItem);
+            if (expandedView != null) {
+                int expandedTop = expandedView.getTop();
+                int collapsedHeight = getCollapsedRowHeight(expandedView, mLastExpandedItem);
+                int shrink = expandedView.getHeight() - collapsedHeight;
+                setCellExpanded(expandedView, mLastExpandedItem, false);
+                setOldTargetHeight(getPositionForView(expandedView), collapsedHeight);
+
+                // The selected view moves up as a cell above it collapses
+                if (expandedTop < top) {
+                    top -= shrink;
+                    bottom -= shrink;
+                }
+            }
+            else {
+                // The cell is not on the screen and is laid out collapsed once it is
+                mLastExpandedItem.setExpanded(false);
+            }
+        }
 
-        int childCount = getChildCount();
-        for (int i = 0; i < childCount; i++) {
-            View v = getChildAt(i);
-            // Set transient state means the framework
-            // should attempt to preserve this view whenever possible
-            ViewCompat.setHasTransientState(v, true);
-            oldCoordinates.put(v, new int[]{v.getTop(), v.getBottom()});
-        }
-
-		/* Update the layout so the extra content becomes visible. */
-        final View expandingLayout = view.findViewById(R.id.expanding_layout);
-        expandingLayout.setVisibility(View.VISIBLE);
-
-		/*
-         * Add an onPreDraw Listener to the listview. onPreDraw will get invoked
-		 * after onLayout and onMeasure have run but before anything has been
-		 * drawn. This means that the final post layout properties for all the
-		 * items have already been determined, but still have not been rendered
-		 * onto the screen.
-		 */
-        final ViewTreeObserver observer = getViewTreeObserver();
-        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
-
-            @Override
-            public boolean onPreDraw() {
-				/* Determine if this is the first or second pass. */
-                if (!mShouldRemoveObserver) {
-                    mShouldRemoveObserver = true;
-
-					/*
-					 * Calculate what the parameters should be for
-					 * setSelectionFromTop. The ListView must be offset in a
-					 * way, such that after the animation takes place, all the
-					 * cells that remain visible are rendered completely by the
-					 * ListView.
-					 */
-                    int newTop = view.getTop();
-                    int newBottom = view.getBottom();
-
-                    int newHeight = newBottom - newTop;
-                    int oldHeight = oldBottom - oldTop;
-                    int delta = newHeight - oldHeight;
-
-                    mTranslate = getTopAndBottomTranslations(oldTop, oldBottom, delta, true);
-
-                    int currentTop = view.getTop();
-                    int futureTop = oldTop - mTranslate[0];
-
-                    int firstChildStartTop = getChildAt(0).getTop();
-                    int firstVisiblePosition = getFirstVisiblePosition();
-                    int deltaTop = currentTop - futureTop;
-
-                    int i;
-                    int childCount = getChildCount();
-                    for (i = 0; i < childCount; i++) {
-                        View v = getChildAt(i);
-                        int height = v.getBottom() - Math.max(0, v.getTop());
-
-                        // Check if the deltaTop will hide the first child completely
-                        if (deltaTop - height > 0) {
-                            firstVisiblePosition++;
-                            deltaTop -= height;
-                        }
-                        else {
-                            break;
-                        }
-                    }
+        if (isExpanding) {
+            // Inflates the extra content the first time the cell is expanded
+            CustomArrayAdapter.ensureExpandingLayout(view, viewObject);
+        }
 
-                    if (i > 0) {
-                        firstChildStartTop = 0;
-                    }
+        int targetHeight = isExpanding
+                ? getCollapsedRowHeight(view, viewObject) + getExpandedHeight(view, viewObject)
+                : getCollapsedRowHeight(view, viewObject);
+        setCellExpanded(view, viewObject, isExpanding);
+        setOldTargetHeight(position, targetHeight);
+        if (isExpanding) {
+            mLastExpandedItem = viewObject;
+        }
 
-                    // Move the first visible view to the right position, thereby scrolling
-                    // the listview
-                    setSelectionFromTop(firstVisiblePosition, firstChildStartTop - deltaTop);
-
-					/*
-					 * Request another layout to update the layout parameters of
-					 * the cells.
-					 */
-                    requestLayout();
-
-					/*
-					 * Return false such that the ListView does not redraw its
-					 * contents on this layout but only updates all the
-					 * parameters associated with its children.
-					 */
-                    return false;
-                }
+        /* Predict the translations of the bounds of the selected cell. */
+        int yDelta = Math.abs(targetHeight - (bottom - top));
+        int[] translations = getTopAndBottomTranslations(top, bottom, yDelta, isExpanding);
+        int futureTop = isExpanding ? top - translations[0] : top + translations[0];
 
-				/*
-				 * Remove the predraw listener so this method does not keep
-				 * getting called.
-				 */
-                mShouldRemoveObserver = false;
-                observer.removeOnPreDrawListener(this);
-
-                // mTranslate will keep the translated top & bottom dist from the first pass
-                int yTranslateTop = mTranslate[0];
-                int yTranslateBottom = mTranslate[1];
-
-                ArrayList<Animator> animations = new ArrayList<>();
-
-                // Position of the view selected within the listview
-                int index = indexOfChild(view);
-
-				/*
-				 * Loop through all the views that were on the screen before the
-				 * cell was expanded. Some cells will still be children of the
-				 * ListView while others will not. The cells that remain
-				 * children of the ListView simply have their bounds animated
-				 * appropriately. The cells that are no longer children of the
-				 * ListView also have their bounds animated, but must also be
-				 * added to a list of views which will be drawn in dispatchDraw.
-				 */
-                for (View v : oldCoordinates.keySet()) {
-                    int[] old = oldCoordinates.get(v);
+        pinDepartingViews(position, futureTop);
 
-                    // Put the view back to the original position to prepare for animation
-                    v.setTop(old[0]);
-                    v.setBottom(old[1]);
+        /* Scroll the listview so the layout ends with the selected cell in place. */
+        setSelectionFromTop(position, futureTop);
 
-                    // Views that will not be visible after expansion
-                    if (v.getParent() == null)  {
-                        mViewsToDraw.add(v);
+        if (!mIsLayoutPending) {
+            mIsLayoutPending = true;
+            getViewTreeObserver().addOnPreDrawListener(mToggledCellsPreDrawListener);
+        }
+    }
 
-                        // Check if it's moved up or down
-                        int delta = old[0] < oldTop ? -yTranslateTop : yTranslateBottom;
-                        animations.add(getAnimation(v, delta, delta));
-                    }
-                    // Views that will still be visible after expansion
-                    else {
-                        int i = indexOfChild(v);
+    /**
+     * Updates the expanded state of the item and the layout of its view, and fades its
+     * extra content in or out. The fade is retargeted from the current alpha of the extra
+     * content, in case it is still fading from an earlier toggle.
+     * <p/>
+     * The view is kept from being recycled until the cells stop moving, at which
+     * point a collapsed view gets its extra content hidden (see finishToggledCells).
+     * A collapsing view is given its collapsed height right away, while its extra
+     * content stays laid out so it can fade out as the view shrinks.
+     */
+    private void setCellExpanded(View view, ExpandableListItem viewObject, boolean isExpanded) {
+        viewObject.setExpanded(isExpanded);
+
+        View expandingLayout = view.findViewById(R.id.expanding_layout);
+        ObjectAnimator fade = getFadeAnimator(expandingLayout);
+        fade.cancel();
+        if (!mToggledItems.contains(viewObject)) {
+            mToggledItems.add(viewObject);
+            mToggledLayouts.add(expandingLayout);
+            ViewCompat.setHasTransientState(view, true);
+            if (isExpanded) {
+                expandingLayout.setAlpha(0);
+            }
+        }
+
+        LayoutParams params = (LayoutParams) view.getLayoutParams();
+        if (isExpanded) {
+            expandingLayout.setVisibility(View.VISIBLE);
+            params.height = LayoutParams.WRAP_CONTENT;
+        }
+        else {
+            params.height = getCollapsedRowHeight(view, viewObject);
+        }
+        view.setLayoutParams(params);
 
-                        // If v is not the selected/clicked view, then do the animation
-                        if (v != view) {
+        fade.setFloatValues(expandingLayout.getAlpha(), isExpanded ? 1 : 0);
+        fade.start();
+    }
 
-                            // Check if v is above or below the selected/clicked view
-                            int delta = i > index ? yTranslateBottom : -yTranslateTop;
-                            animations.add(getAnimation(v, delta, delta));
-                        }
+    /**
+     * Returns the animator fading the given extra content, which is created once per
+     * view and kept in a tag of it
+     */
+    private ObjectAnimator getFadeAnimator(View expandingLayout) {
+        ObjectAnimator fade = (ObjectAnimator) expandingLayout.getTag(R.id.fade_animator);
+        if (fade == null) {
+            fade = ObjectAnimator.ofFloat(expandingLayout, "alpha", 0, 1);
+            expandingLayout.setTag(R.id.fade_animator, fade);
+        }
+        return fade;
+    }
 
-                        // Allow the view to be recycled. No longer needed
-                        // for further computation
-                        ViewCompat.setHasTransientState(v, false);
-                    }
+    /**
+     * Called once the cells stop moving. Hides the extra content of the cells that
+     * were collapsed and lets the toggled cells be recycled again.
+     */
+    private void finishToggledCells() {
+        for (int i = 0; i < mToggledItems.size(); i++) {
+            ExpandableListItem viewObject = mToggledItems.get(i);
+            View expandingLayout = mToggledLayouts.get(i);
+            getFadeAnimator(expandingLayout).end();
+
+            View view = (View) expandingLayout.getParent();
+
+            // Skips the views that have been bound to another item in the meantime
+            int position = getPositionForView(view);
+            if (position == INVALID_POSITION || getItemAtPosition(position) == viewObject) {
+                if (!viewObject.isExpanded()) {
+                    expandingLayout.setVisibility(View.GONE);
+                    LayoutParams params = (LayoutParams) view.getLayoutParams();
+                    params.height = LayoutParams.WRAP_CONTENT;
+                    view.setLayoutParams(params);
                 }
+                /*
+                 * Note that alpha must be set back to 1 in case this
+                 * view is reused by a cell that was expanded, but not
+                 * yet collapsed, so its state should persist in an
+                 * expanded state with the extra content visible.
+                 */
+                expandingLayout.setAlpha(1);
+            }
+            ViewCompat.setHasTransientState(view, false);
+        }
+        mToggledItems.clear();
+        mToggledLayouts.clear();
+    }
 
-				/* Adds animation for expanding the cell that was clicked. */
-                animations.add(getAnimation(view, -yTranslateTop, yTranslateBottom));
-
-				/* Adds an animation for fading in the extra content. */
-                animations.add(ObjectAnimator.ofFloat(
-                        view.findViewById(R.id.expanding_layout), "alpha", 0, 1));
-
-				/* Disabled the ListView for the duration of the animation. */
-                setEnabled(false);
-                setClickable(false);
-
-				/*
-				 * Play all the animations created above together at the same
-				 * time.
-				 */
-                AnimatorSet s = new AnimatorSet();
-                s.playTogether(animations);
-                s.addListener(new AnimatorListenerAdapter() {
-                    @Override
-                    public void onAnimationEnd(Animator animation) {
-                        viewObject.setExpanded(true);
-                        setEnabled(true);
-                        setClickable(true);
-
-                        if (mViewsToDraw.size() > 0) {
-                            for (View v : mViewsToDraw) {
-                                ViewCompat.setHasTransientState(v, false);
-                            }
-                        }
-                        mViewsToDraw.clear();
-                    }
-                });
-                s.start();
+    /**
+     * Returns the child showing the given item, or null if it is not on the screen
+     */
+    private View getViewForItem(ExpandableListItem viewObject) {
+        int firstVisiblePosition = getFirstVisiblePosition();
+        int childCount = getChildCount();
+        for (int i = 0; i < childCount; i++) {
+            if (getItemAtPosition(firstVisiblePosition + i) == viewObject) {
+                return getChildAt(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the height of the view when only its image and title are shown
+     */
+    private int getCollapsedRowHeight(View view, ExpandableListItem viewObject) {
+        return viewObject.getCollapsedHeight() + view.getPaddingTop() + view.getPaddingBottom();
+    }
 
-                return true;
+    /**
+     * Stops the cells where they are currently drawn. The cells that were being animated
+     * off the screen are kept in mViewsToDraw, so they are stored with the other cells.
+     */
+    private void cancelBoundsAnimation() {
+        if (mIsAnimatingBounds) {
+            mIsAnimatingBounds = false;
+            mBoundsAnimator.cancel();
+            clearAnimatedViews();
+        }
+    }
+
+    /**
+     * Stores the top and bottom bounds of all the cells on the screen, by order of
+     * position, along with the cells still being drawn off the screen.
+     */
+    private void storeOldBounds() {
+        int childCount = getChildCount();
+        int count = childCount + mViewsToDraw.size();
+        if (mOldViews.length < count) {
+            mOldViews = new View[count];
+            mOldPositions = new int[count];
+            mOldTops = new int[count];
+            mOldBottoms = new int[count];
+            mOldTargetHeights = new int[count];
+            mIsOldViewPinned = new boolean[count];
+        }
+
+        int firstVisiblePosition = getFirstVisiblePosition();
+        mOldCount = 0;
+        for (int i = 0; i < childCount; i++) {
+            addOldBounds(getChildAt(i), firstVisiblePosition + i, false);
+        }
+
+        // These views are still pinned from the toggle that moved them off the screen
+        for (int i = 0; i < mViewsToDraw.size(); i++) {
+            addOldBounds(mViewsToDraw.get(i), mViewsToDrawPositions[i], true);
+        }
+        mViewsToDraw.clear();
+    }
+
+    /**
+     * Inserts the bounds of a cell in the old bounds, keeping them ordered by position
+     */
+    private void addOldBounds(View v, int position, boolean isPinned) {
+        int i = mOldCount;
+        while (i > 0 && mOldPositions[i - 1] > position) {
+            mOldViews[i] = mOldViews[i - 1];
+            mOldPositions[i] = mOldPositions[i - 1];
+            mOldTops[i] = mOldTops[i - 1];
+            mOldBottoms[i] = mOldBottoms[i - 1];
+            mIsOldViewPinned[i] = mIsOldViewPinned[i - 1];
+            mOldTargetHeights[i] = mOldTargetHeights[i - 1];
+            i--;
+        }
+        mOldViews[i] = v;
+        mOldPositions[i] = position;
+        mOldTops[i] = v.getTop();
+        mOldBottoms[i] = v.getBottom();
+        mIsOldViewPinned[i] = isPinned;
+        mOldTargetHeights[i] = -1;
+        mOldCount++;
+    }
+
+    /**
+     * Records the height the cell at the given position is given by a toggle
+     */
+    private void setOldTargetHeight(int position, int targetHeight) {
+        for (int i = 0; i < mOldCount; i++) {
+            if (mOldPositions[i] == position) {
+                mOldTargetHeights[i] = targetHeight;
+                return;
             }
-        });
+        }
     }
 
     /**
-     * This method collapses the view that was clicked and animates all the
-     * views around it to close around the collapsing view. There are several
-     * steps required to do this which are outlined below.
+     * Predicts the bounds of the stored cells after the next layout, given the future
+     * top of the selected cell, and sets the transient state of the ones that will be
+     * moved off screen. Transient state means the framework should attempt to preserve
+     * these views, so they can still be animated out. The other cells are left to be
+     * recycled as usual.
      * <p/>
-     * 1. Update the layout parameters of the view clicked so as to minimize its
-     * height to the original collapsed (default) state.
-     * 2. After invoking a layout, the listview will shift all the cells so
-     * as to display them most efficiently. Therefore, during the first predraw pass,
-     * the listview must be offset by some amount such that given the custom bound change upon
-     * collapse, all the cells that need to be on the screen after the layout
-     * are rendered by the listview.
-     * 3. On the second predraw pass, all the items are first returned to their original
-     * location (before the first layout).
-     * 4. The collapsing view's bounds are animated to what the final
-     * values should be.
-     * 5. The bounds above the collapsing view are animated
-     * downwards while the bounds below the collapsing view are animated
-     * upwards.
-     * 6. The extra text is faded out as its contents become visible
-     * throughout the animation process.
+     * The cells keep their measured height unless they are toggled, and are laid out
+     * one after the other from the selected cell.
      */
-    private void collapseView(final View view) {
-        final ExpandableListItem viewObject = (ExpandableListItem) getItemAtPosition(
-                getPositionForView(view));
+    private void pinDepartingViews(int position, int futureTop) {
+        int index = 0;
+        while (index < mOldCount && mOldPositions[index] != position) {
+            index++;
+        }
+        if (index == mOldCount) {
+            return;
+        }
 
-		/* Store the original top and bottom bounds of all the cells. */
-        final int oldTop = view.getTop();
-        final int oldBottom = view.getBottom();
+        int height = getHeight();
+        int dividerHeight = getDividerHeight();
 
-        final HashMap<View, int[]> oldCoordinates = new HashMap<>();
+        int top = futureTop;
+        for (int i = index - 1; i >= 0; i--) {
+            int bottom = top - dividerHeight;
+            top = bottom - getOldTargetHeight(i);
+            pinIfOutside(i, top, bottom, height);
+        }
 
-        int childCount = getChildCount();
-        for (int i = 0; i < childCount; i++) {
-            View v = getChildAt(i);
-            ViewCompat.setHasTransientState(v, true);
-            oldCoordinates.put(v, new int[]{v.getTop(), v.getBottom()});
-        }
-
-		/* Update the layout so the extra content becomes invisible. */
-        view.setLayoutParams(new LayoutParams(
-                LayoutParams.MATCH_PARENT, viewObject.getCollapsedHeight()));
-
-		/* Add an onPreDraw listener. */
-        final ViewTreeObserver observer = getViewTreeObserver();
-        observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
-
-            @Override
-            public boolean onPreDraw() {
-
-                if (!mShouldRemoveObserver) {
-					/*
-					 * Same as for expandingView, the parameters for
-					 * setSelectionFromTop must be determined such that the
-					 * necessary cells of the ListView are rendered and added to
-					 * it.
-					 */
-                    mShouldRemoveObserver = true;
-
-                    int newTop = view.getTop();
-                    int newBottom = view.getBottom();
-
-                    int newHeight = newBottom - newTop;
-                    int oldHeight = oldBottom - oldTop;
-                    int deltaHeight = oldHeight - newHeight;
-
-                    mTranslate = getTopAndBottomTranslations(oldTop, oldBottom, deltaHeight, false);
-
-                    int currentTop = view.getTop();
-                    int futureTop = oldTop + mTranslate[0];
-
-                    int firstChildStartTop = getChildAt(0).getTop();
-                    int firstVisiblePosition = getFirstVisiblePosition();
-                    int deltaTop = currentTop - futureTop;
-
-                    int i;
-                    int childCount = getChildCount();
-                    for (i = 0; i < childCount; i++) {
-                        View v = getChildAt(i);
-                        int height = v.getBottom() - Math.max(0, v.getTop());
-                        if (deltaTop - height > 0) {
-                            firstVisiblePosition++;
-                            deltaTop -= height;
-                        }
-                        else {
-                            break;
-                        }
-                    }
+        int bottom = futureTop + getOldTargetHeight(index);
+        for (int i = index + 1; i < mOldCount; i++) {
+            top = bottom + dividerHeight;
+            bottom = top + getOldTargetHeight(i);
+            pinIfOutside(i, top, bottom, height);
+        }
+    }
 
-                    if (i > 0) {
-                        firstChildStartTop = 0;
-                    }
+    private int getOldTargetHeight(int i) {
+        return mOldTargetHeights[i] >= 0
+                ? mOldTargetHeights[i] : mOldViews[i].getMeasuredHeight();
+    }
+
+    private void pinIfOutside(int i, int top, int bottom, int height) {
+        if (!mIsOldViewPinned[i] && (bottom <= 0 || top >= height)) {
+            ViewCompat.setHasTransientState(mOldViews[i], true);
+            mIsOldViewPinned[i] = true;
+        }
+    }
 
-                    setSelectionFromTop(firstVisiblePosition, firstChildStartTop - deltaTop);
+    /**
+     * Registered by toggleView, and reused for every toggle rather than allocating a
+     * listener per click. It runs once, right after the layout following one or more
+     * toggles. At that point, all the items are at their final bounds but have not
+     * been drawn yet.
+     * <p/>
+     * The cells that were on the screen before the layout are moved back to their
+     * original bounds, and the cells that only came on the screen are moved by the
+     * same translation as their neighbours. All of them are then animated to their
+     * final bounds. The cells that are no longer children of the ListView are
+     * animated by the same translation as their neighbours, and drawn in
+     * dispatchDraw until the animation ends.
+     */
+    private final ViewTreeObserver.OnPreDrawListener mToggledCellsPreDrawListener =
+            new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            getViewTreeObserver().removeOnPreDrawListener(this);
+            mIsLayoutPending = false;
+
+            int firstVisiblePosition = getFirstVisiblePosition();
+            int childCount = getChildCount();
+
+            /*
+             * Match the children with the stored cells, both ordered by position,
+             * and find the translations of the first and last cells that remained on
+             * the screen. Cells moving in or out at either end use these.
+             */
+            int yTranslateTop = 0;
+            int yTranslateBottom = 0;
+            boolean hasMatch = false;
+            int j = 0;
+            for (int i = 0; i < childCount; i++) {
+                View v = getChildAt(i);
+                int position = firstVisiblePosition + i;
+                while (j < mOldCount && mOldPositions[j] < position) {
+                    j++;
+                }
+                if (j < mOldCount && mOldPositions[j] == position && mOldViews[j] == v) {
+                    if (!hasMatch) {
+                        yTranslateTop = v.getTop() - mOldTops[j];
+                        hasMatch = true;
+                    }
+                    yTranslateBottom = v.getBottom() - mOldBottoms[j];
+                }
+            }
 
-                    requestLayout();
+            j = 0;
+            for (int i = 0; i < childCount; i++) {
+                View v = getChildAt(i);
+                int position = firstVisiblePosition + i;
+                int newTop = v.getTop();
+                int newBottom = v.getBottom();
 
-                    return false;
+                while (j < mOldCount && mOldPositions[j] < position) {
+                    j++;
                 }
+                if (j < mOldCount && mOldPositions[j] == position && mOldViews[j] == v) {
+                    // Put the view back to the original position to prepare for animation
+                    v.setTop(mOldTops[j]);
+                    v.setBottom(mOldBottoms[j]);
+                    mOldViews[j] = null;
 
-                mShouldRemoveObserver = false;
-                observer.removeOnPreDrawListener(this);
-
-                int yTranslateTop = mTranslate[0];
-                int yTranslateBottom = mTranslate[1];
-
-                int index = indexOfChild(view);
-                int childCount = getChildCount();
-                for (int i = 0; i < childCount; i++) {
-                    View v = getChildAt(i);
-                    int[] old = oldCoordinates.get(v);
-                    if (old != null) {
-						/*
-						 * If the cell was present in the ListView before the
-						 * collapse and after the collapse then the bounds are
-						 * reset to their old values.
-						 */
-                        v.setTop(old[0]);
-                        v.setBottom(old[1]);
+                    // Allow the view to be recycled again if it was pinned
+                    if (mIsOldViewPinned[j]) {
                         ViewCompat.setHasTransientState(v, false);
                     }
-                    else {
-						/*
-						 * If the cell is present in the ListView after the
-						 * collapse but not before the collapse then the bounds
-						 * are calculated using the bottom and top translation
-						 * of the collapsing cell.
-						 */
-                        int delta = i > index ? yTranslateBottom : -yTranslateTop;
-                        v.setTop(v.getTop() + delta);
-                        v.setBottom(v.getBottom() + delta);
-                    }
                 }
+                else {
+                    // Check if v came in above or below the cells that remained
+                    int delta = j == 0 ? yTranslateTop : yTranslateBottom;
+                    v.setTop(newTop - delta);
+                    v.setBottom(newBottom - delta);
+                }
+                if (newTop != v.getTop() || newBottom != v.getBottom()) {
+                    addAnimatedView(v, newTop - v.getTop(), newBottom - v.getBottom());
+                }
+            }
 
-                final View expandingLayout = view.findViewById(R.id.expanding_layout);
-
-				/*
-				 * Animates all the cells present on the screen after the
-				 * collapse.
-				 */
-                ArrayList<Animator> animations = new ArrayList<>();
-                for (int i = 0; i < childCount; i++) {
-                    View v = getChildAt(i);
-                    if (v != view) {
-                        float diff = i > index ? -yTranslateBottom : yTranslateTop;
-                        animations.add(getAnimation(v, diff, diff));
-                    }
+            /*
+             * The views left in mOldViews were on the screen before the layout
+             * but are no longer children of the ListView. Those that were pinned
+             * are animated out, the others have already been recycled.
+             */
+            int firstNewPosition = childCount > 0 ? firstVisiblePosition : Integer.MAX_VALUE;
+            for (int i = 0; i < mOldCount; i++) {
+                View v = mOldViews[i];
+                mOldViews[i] = null;
+                if (v == null || !mIsOldViewPinned[i]) {
+                    continue;
+                }
+                if (v.getParent() != null) {
+                    ViewCompat.setHasTransientState(v, false);
+                    continue;
                 }
+                v.setTop(mOldTops[i]);
+                v.setBottom(mOldBottoms[i]);
+                addViewToDraw(v, mOldPositions[i]);
 
-				/* Adds animation for collapsing the cell that was clicked. */
-                animations.add(getAnimation(view, yTranslateTop, -yTranslateBottom));
-
-				/* Adds an animation for fading out the extra content. */
-                animations.add(ObjectAnimator.ofFloat(expandingLayout, "alpha", 1, 0));
-
-				/* Disabled the ListView for the duration of the animation. */
-                setEnabled(false);
-                setClickable(false);
-
-				/*
-				 * Play all the animations created above together at the same
-				 * time.
-				 */
-                AnimatorSet s = new AnimatorSet();
-                s.playTogether(animations);
-                s.addListener(new AnimatorListenerAdapter() {
-                    @Override
-                    public void onAnimationEnd(Animator animation) {
-                        expandingLayout.setVisibility(View.GONE);
-                        view.setLayoutParams(new LayoutParams(
-                                LayoutParams.MATCH_PARENT,
-                                LayoutParams.WRAP_CONTENT));
-                        viewObject.setExpanded(false);
-                        setEnabled(true);
-                        setClickable(true);
-						/*
-						 * Note that alpha must be set back to 1 in case this
-						 * view is reused by a cell that was expanded, but not
-						 * yet collapsed, so its state should persist in an
-						 * expanded state with the extra content visible.
-						 */
-                        expandingLayout.setAlpha(1);
-                    }
-                });
-                s.start();
+                // Check if it's moved up or down
+                int delta = mOldPositions[i] < firstNewPosition ? yTranslateTop : yTranslateBottom;
+                addAnimatedView(v, delta, delta);
+            }
+            mOldCount = 0;
+
+            /* Move all the cells recorded above together at the same time. */
+            mIsAnimatingBounds = true;
+            mBoundsAnimator.start();
+
+            return true;
+        }
+    };
+
+    private final ValueAnimator.AnimatorUpdateListener mBoundsUpdateListener =
+            new ValueAnimator.AnimatorUpdateListener() {
+        @Override
+        public void onAnimationUpdate(ValueAnimator animation) {
+            float fraction = animation.getAnimatedFraction();
+            for (int i = 0; i < mAnimatedCount; i++) {
+                View v = mAnimatedViews[i];
+                v.setTop(mStartTops[i] + (int) ((mEndTops[i] - mStartTops[i]) * fraction));
+                v.setBottom(mStartBottoms[i]
+                        + (int) ((mEndBottoms[i] - mStartBottoms[i]) * fraction));
+            }
+
+            // The cells drawn off the screen are not children and do not invalidate it
+            invalidate();
+        }
+    };
+
+    private final AnimatorListenerAdapter mBoundsAnimatorListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            // A cancelled animation is retargeted by the toggle that cancelled it
+            if (!mIsAnimatingBounds) {
+                return;
+            }
+            mIsAnimatingBounds = false;
+            clearAnimatedViews();
 
-                return true;
+            for (int i = 0; i < mViewsToDraw.size(); i++) {
+                ViewCompat.setHasTransientState(mViewsToDraw.get(i), false);
             }
-        });
+            mViewsToDraw.clear();
+            finishToggledCells();
+        }
+    };
+
+    private void addViewToDraw(View v, int position) {
+        int size = mViewsToDraw.size();
+        if (mViewsToDrawPositions.length == size) {
+            int[] positions = new int[Math.max(size * 2, 4)];
+            System.arraycopy(mViewsToDrawPositions, 0, positions, 0, size);
+            mViewsToDrawPositions = positions;
+        }
+        mViewsToDrawPositions[size] = position;
+        mViewsToDraw.add(v);
+    }
+
+    /**
+     * The cells cannot be scrolled while their bounds are animated, as the ListView
+     * offsets them from the bounds they are drawn at. Once the user starts scrolling,
+     * the animation jumps to its end.
+     */
+    @Override
+    public boolean onTouchEvent(MotionEvent ev) {
+        switch (ev.getAction() & MotionEvent.ACTION_MASK) {
+            case MotionEvent.ACTION_DOWN:
+                mDownY = (int) ev.getY();
+                break;
+
+            case MotionEvent.ACTION_MOVE:
+                if (mIsAnimatingBounds
+                        && Math.abs((int) ev.getY() - mDownY) > mTouchSlop) {
+                    mBoundsAnimator.end();
+                }
+                break;
+
+            default:
+                break;
+        }
+        return super.onTouchEvent(ev);
+    }
+
+    /**
+     * Returns the height by which the cell grows when its extra content is shown. The
+     * height precomputed for the width of the cell is used when it is available,
+     * otherwise the extra content is measured right away.
+     */
+    private int getExpandedHeight(View view, ExpandableListItem viewObject) {
+        int width = view.findViewById(R.id.item_linear_layout).getWidth();
+        int expandedHeight = viewObject.getExpandedHeightForWidth(width);
+        if (expandedHeight < 0) {
+            View expandingLayout = view.findViewById(R.id.expanding_layout);
+            expandingLayout.measure(
+                    MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+            expandedHeight = expandingLayout.getMeasuredHeight();
+        }
+        return expandedHeight;
     }
 
     /**
@@ -518,7 +726,8 @@ public class ExpandingListView extends ListView {
      * @param bottom        Old bottom of the view
      * @param yDelta        y-dist to be expanded/collapsed
      * @param isExpanding
-     * @return              top and bottom bound changes
+     * @return              top and bottom bound changes, in an array that is reused
+     *                      by the next call
      */
     private int[] getTopAndBottomTranslations(int top, int bottom, int yDelta, boolean isExpanding) {
         int yTranslationTop = 0;
@@ -577,7 +786,9 @@ public class ExpandingListView extends ListView {
             }
         }
 
-        return new int[] {yTranslationTop, yTranslationBottom};
+        mTranslations[0] = yTranslationTop;
+        mTranslations[1] = yTranslationBottom;
+        return mTranslations;
     }
 
     /**
@@ -594,11 +805,8 @@ public class ExpandingListView extends ListView {
     protected void dispatchDraw(Canvas canvas) {
         super.dispatchDraw(canvas);
 
-        if (mViewsToDraw.size() == 0) {
-            return;
-        }
-
-        for (View v : mViewsToDraw) {
+        for (int i = 0; i < mViewsToDraw.size(); i++) {
+            View v = mViewsToDraw.get(i);
             canvas.translate(0, v.getTop());
             v.draw(canvas);
             canvas.translate(0, -v.getTop());
@@ -607,21 +815,43 @@ public class ExpandingListView extends ListView {
 
     /**
      * This method takes some view and the values by which its top and bottom
-     * bounds should be changed by. Given these params, an animation which will
-     * animate these bound changes is created and returned.
+     * bounds should be changed by, and records these bound changes to be animated
+     * by mBoundsAnimator along with those of the other cells.
      */
-    private Animator getAnimation(final View view, float translateTop, float translateBottom) {
-        int top = view.getTop();
-        int bottom = view.getBottom();
+    private void addAnimatedView(View view, int translateTop, int translateBottom) {
+        int count = mAnimatedCount;
+        if (mAnimatedViews.length == count) {
+            int capacity = Math.max(count * 2, 8);
+            View[] views = new View[capacity];
+            System.arraycopy(mAnimatedViews, 0, views, 0, count);
+            mAnimatedViews = views;
+            mStartTops = grow(mStartTops, capacity);
+            mStartBottoms = grow(mStartBottoms, capacity);
+            mEndTops = grow(mEndTops, capacity);
+            mEndBottoms = grow(mEndBottoms, capacity);
+        }
 
-        int endTop = (int) (top + translateTop);
-        int endBottom = (int) (bottom + translateBottom);
+        mAnimatedViews[count] = view;
+        mStartTops[count] = view.getTop();
+        mStartBottoms[count] = view.getBottom();
+        mEndTops[count] = view.getTop() + translateTop;
+        mEndBottoms[count] = view.getBottom() + translateBottom;
+        mAnimatedCount++;
+    }
 
-        PropertyValuesHolder translationTop = PropertyValuesHolder.ofInt("top",
-                top, endTop);
-        PropertyValuesHolder translationBottom = PropertyValuesHolder.ofInt(
-                "bottom", bottom, endBottom);
+    private static int[] grow(int[] array, int capacity) {
+        int[] grown = new int[capacity];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
 
-        return ObjectAnimator.ofPropertyValuesHolder(view, translationTop, translationBottom);
+    /**
+     * Forgets the animated cells, so that they are not held on to once they stop moving
+     */
+    private void clearAnimatedViews() {
+        for (int i = 0; i < mAnimatedCount; i++) {
+            mAnimatedViews[i] = null;
+        }
+        mAnimatedCount = 0;
     }
 }
@@ -5,5 +5,5 @@ package com.desmond.allaboutlistview.ListViewExpandingCells;
  * layout experiences a size change
  */
 public interface OnSizeChangedListener {
-    public void onSizeChanged(int newHeight);
+    public void onSizeChanged(int newWidth, int newHeight);
 }
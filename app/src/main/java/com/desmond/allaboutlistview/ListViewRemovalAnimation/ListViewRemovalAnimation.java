@@ -12,14 +12,17 @@ import android.widget.AdapterView;
 import android.widget.ListView;
 
 import com.desmond.allaboutlistview.Cheeses;
+import com.desmond.allaboutlistview.PersistentList;
 import com.desmond.allaboutlistview.R;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 
 public class ListViewRemovalAnimation extends ActionBarActivity {
 
     StableArrayAdapter mAdapter;
+    List<String> mCheeseList;
     ListView mListView;
     BackgroundContainer mBackgroundContainer;
     boolean mSwiping = false;
@@ -36,10 +39,8 @@ public class ListViewRemovalAnimation extends ActionBarActivity {
 
         mBackgroundContainer = (BackgroundContainer) findViewById(R.id.listViewBackground);
         mListView = (ListView) findViewById(R.id.listview);
-        final ArrayList<String> cheeseList = new ArrayList<String>();
-        for (int i = 0; i < Cheeses.sCheeseStrings.length; ++i) {
-            cheeseList.add(Cheeses.sCheeseStrings[i]);
-        }
+        // Removing from a PersistentList by index does not shift the whole backing array
+        mCheeseList = new PersistentList<String>(Arrays.asList(Cheeses.sCheeseStrings));
 
         SwipeDismissListViewTouchListener touchListener = new SwipeDismissListViewTouchListener(
                 mListView, new SwipeDismissListViewTouchListener.DismissCallbacks() {
@@ -52,7 +53,7 @@ public class ListViewRemovalAnimation extends ActionBarActivity {
             public void onDismiss(ListView listView, int[] reverseSortedPositions) {
                 StableArrayAdapter adapter = (StableArrayAdapter) listView.getAdapter();
                 for (int reverseSortedPosition : reverseSortedPositions) {
-                    adapter.remove(cheeseList.get(reverseSortedPosition));
+                    mCheeseList.remove(reverseSortedPosition);
                 }
                 adapter.notifyDataSetChanged();
             }
@@ -67,7 +68,7 @@ public class ListViewRemovalAnimation extends ActionBarActivity {
             }
         });
 
-        mAdapter = new StableArrayAdapter(this, R.layout.opaque_text_view, cheeseList,
+        mAdapter = new StableArrayAdapter(this, R.layout.opaque_text_view, mCheeseList,
                 mTouchListener);
         mListView.setAdapter(mAdapter);
     }
@@ -204,7 +205,8 @@ public class ListViewRemovalAnimation extends ActionBarActivity {
         
         // Delete the item from the adapter
         int position = mListView.getPositionForView(viewToRemove);
-        mAdapter.remove(mAdapter.getItem(position));
+        mCheeseList.remove(position);
+        mAdapter.notifyDataSetChanged();
         
         final ViewTreeObserver observer = listView.getViewTreeObserver();
         observer.addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
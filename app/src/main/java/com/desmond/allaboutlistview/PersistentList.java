@@ -0,0 +1,429 @@
+package com.desmond.allaboutlistview;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A list stored as a balanced tree of small chunks, which can back an ArrayAdapter in
+ * place of an ArrayList.
+ *
+ * The elements live in leaf chunks of at most CHUNK_SIZE elements, and every inner node
+ * has at most CHUNK_SIZE children. Getting, setting, inserting or removing an element at
+ * any index only walks down one path of the tree, so it takes O(log n) time instead of
+ * the O(n) array copy an ArrayList needs to insert or remove near its head.
+ *
+ * The nodes are never modified once built. A change copies the nodes on the path to the
+ * changed element and shares every other node with the previous version of the list, so
+ * snapshot can hand out an independent copy of the list in constant time, e.g. to diff
+ * against or to undo a change.
+ */
+public class PersistentList<E> extends AbstractList<E> {
+
+    private static final int CHUNK_SIZE = 32;
+    private static final int MIN_CHUNK_SIZE = CHUNK_SIZE / 4;
+
+    private static final Node EMPTY_LEAF = new Node(new Object[0], null, 0);
+
+    private Node mRoot;
+
+    public PersistentList() {
+        mRoot = EMPTY_LEAF;
+    }
+
+    public PersistentList(Collection<? extends E> collection) {
+        mRoot = build(collection);
+    }
+
+    private PersistentList(Node root) {
+        mRoot = root;
+    }
+
+    /**
+     * Returns a copy of this list, in constant time. Later changes to either list do not
+     * affect the other one.
+     */
+    public PersistentList<E> snapshot() {
+        return new PersistentList<E>(mRoot);
+    }
+
+    @Override
+    public int size() {
+        return mRoot.mSize;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index, size());
+        Node node = mRoot;
+        while (node.mChildren != null) {
+            int i = 0;
+            while (index >= node.mChildren[i].mSize) {
+                index -= node.mChildren[i].mSize;
+                i++;
+            }
+            node = node.mChildren[i];
+        }
+        return (E) node.mElements[index];
+    }
+
+    @Override
+    public E set(int index, E element) {
+        E previous = get(index);
+        mRoot = set(mRoot, index, element);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        checkIndex(index, size() + 1);
+        Node[] nodes = insert(mRoot, index, element);
+        mRoot = nodes.length == 1 ? nodes[0] : newInner(nodes);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E removed = get(index);
+        Node root = remove(mRoot, index);
+
+        // Drops the levels left with a single child
+        while (root.mChildren != null && root.mChildren.length == 1) {
+            root = root.mChildren[0];
+        }
+        mRoot = root.mSize == 0 ? EMPTY_LEAF : root;
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * Removes the first occurrence of the element, found with a single walk over the
+     * leaves, then removes it by index
+     */
+    @Override
+    public boolean remove(Object object) {
+        int index = indexOf(object);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public int indexOf(Object object) {
+        return indexOf(mRoot, object);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new LeafIterator();
+    }
+
+    @Override
+    public void clear() {
+        mRoot = EMPTY_LEAF;
+        modCount++;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> collection) {
+        if (isEmpty()) {
+            mRoot = build(collection);
+            modCount++;
+            return !collection.isEmpty();
+        }
+        return super.addAll(collection);
+    }
+
+    /**
+     * An immutable node of the tree. Leaves hold the elements, inner nodes hold the
+     * children, and both know the number of elements below them.
+     */
+    private static final class Node {
+        final Object[] mElements;
+        final Node[] mChildren;
+        final int mSize;
+
+        Node(Object[] elements, Node[] children, int size) {
+            mElements = elements;
+            mChildren = children;
+            mSize = size;
+        }
+
+        int width() {
+            return mChildren != null ? mChildren.length : mElements.length;
+        }
+    }
+
+    /**
+     * Iterates over the elements one leaf at a time. The iterator of AbstractList calls get
+     * for every element, which walks down from the root each time.
+     */
+    private final class LeafIterator implements Iterator<E> {
+        private Node mIteratedRoot;
+        private Object[] mLeaf;
+        private int mLeafStart;
+        private int mIndex = 0;
+        private int mLastIndex = -1;
+        private int mExpectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return mIndex < size();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            checkForComodification();
+            if (mIndex >= size()) {
+                throw new NoSuchElementException();
+            }
+
+            // Set replaces the leaves on its path, so the leaf is found again after one
+            if (mRoot != mIteratedRoot || mIndex - mLeafStart >= mLeaf.length) {
+                findLeaf(mIndex);
+            }
+            mLastIndex = mIndex;
+            return (E) mLeaf[mIndex++ - mLeafStart];
+        }
+
+        @Override
+        public void remove() {
+            if (mLastIndex < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            PersistentList.this.remove(mLastIndex);
+            mIndex = mLastIndex;
+            mLastIndex = -1;
+            mIteratedRoot = null;
+            mExpectedModCount = modCount;
+        }
+
+        private void findLeaf(int index) {
+            Node node = mRoot;
+            int offset = index;
+            while (node.mChildren != null) {
+                int i = 0;
+                while (offset >= node.mChildren[i].mSize) {
+                    offset -= node.mChildren[i].mSize;
+                    i++;
+                }
+                node = node.mChildren[i];
+            }
+            mIteratedRoot = mRoot;
+            mLeaf = node.mElements;
+            mLeafStart = index - offset;
+        }
+
+        private void checkForComodification() {
+            if (modCount != mExpectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    private static int indexOf(Node node, Object object) {
+        if (node.mChildren == null) {
+            for (int i = 0; i < node.mElements.length; i++) {
+                if (object == null ? node.mElements[i] == null
+                        : object.equals(node.mElements[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int offset = 0;
+        for (Node child : node.mChildren) {
+            int index = indexOf(child, object);
+            if (index >= 0) {
+                return offset + index;
+            }
+            offset += child.mSize;
+        }
+        return -1;
+    }
+
+    private static Node newLeaf(Object[] elements) {
+        return new Node(elements, null, elements.length);
+    }
+
+    private static Node newInner(Node[] children) {
+        int size = 0;
+        for (Node child : children) {
+            size += child.mSize;
+        }
+        return new Node(null, children, size);
+    }
+
+    /**
+     * Builds a tree of full chunks holding the elements of the collection, bottom up
+     */
+    private static Node build(Collection<?> collection) {
+        if (collection.isEmpty()) {
+            return EMPTY_LEAF;
+        }
+
+        Node[] level = new Node[(collection.size() + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        Iterator<?> iterator = collection.iterator();
+        for (int i = 0; i < level.length; i++) {
+            int chunkSize = Math.min(CHUNK_SIZE, collection.size() - i * CHUNK_SIZE);
+            Object[] elements = new Object[chunkSize];
+            for (int j = 0; j < elements.length; j++) {
+                elements[j] = iterator.next();
+            }
+            level[i] = newLeaf(elements);
+        }
+
+        while (level.length > 1) {
+            Node[] parents = new Node[(level.length + CHUNK_SIZE - 1) / CHUNK_SIZE];
+            for (int i = 0; i < parents.length; i++) {
+                Node[] children = new Node[Math.min(CHUNK_SIZE, level.length - i * CHUNK_SIZE)];
+                System.arraycopy(level, i * CHUNK_SIZE, children, 0, children.length);
+                parents[i] = newInner(children);
+            }
+            level = parents;
+        }
+        return level[0];
+    }
+
+    private static Node set(Node node, int index, Object element) {
+        if (node.mChildren == null) {
+            Object[] elements = node.mElements.clone();
+            elements[index] = element;
+            return newLeaf(elements);
+        }
+
+        int i = 0;
+        while (index >= node.mChildren[i].mSize) {
+            index -= node.mChildren[i].mSize;
+            i++;
+        }
+        Node[] children = node.mChildren.clone();
+        children[i] = set(children[i], index, element);
+        return new Node(null, children, node.mSize);
+    }
+
+    /**
+     * Returns the copy of node with element inserted at index, split in two nodes if it
+     * overflowed
+     */
+    private static Node[] insert(Node node, int index, Object element) {
+        if (node.mChildren == null) {
+            Object[] elements = new Object[node.mElements.length + 1];
+            System.arraycopy(node.mElements, 0, elements, 0, index);
+            elements[index] = element;
+            System.arraycopy(node.mElements, index, elements, index + 1,
+                    node.mElements.length - index);
+            if (elements.length <= CHUNK_SIZE) {
+                return new Node[] {newLeaf(elements)};
+            }
+            int half = elements.length / 2;
+            Object[] left = new Object[half];
+            Object[] right = new Object[elements.length - half];
+            System.arraycopy(elements, 0, left, 0, half);
+            System.arraycopy(elements, half, right, 0, right.length);
+            return new Node[] {newLeaf(left), newLeaf(right)};
+        }
+
+        // Inserting at the very end goes into the last child
+        int i = 0;
+        while (i < node.mChildren.length - 1 && index > node.mChildren[i].mSize) {
+            index -= node.mChildren[i].mSize;
+            i++;
+        }
+        if (i < node.mChildren.length - 1 && index == node.mChildren[i].mSize
+                && node.mChildren[i].width() == CHUNK_SIZE) {
+            // Prefers the start of the next child over the end of a full one
+            index = 0;
+            i++;
+        }
+
+        Node[] replacement = insert(node.mChildren[i], index, element);
+        Node[] children = new Node[node.mChildren.length + replacement.length - 1];
+        System.arraycopy(node.mChildren, 0, children, 0, i);
+        System.arraycopy(replacement, 0, children, i, replacement.length);
+        System.arraycopy(node.mChildren, i + 1, children, i + replacement.length,
+                node.mChildren.length - i - 1);
+        if (children.length <= CHUNK_SIZE) {
+            return new Node[] {newInner(children)};
+        }
+        int half = children.length / 2;
+        Node[] left = new Node[half];
+        Node[] right = new Node[children.length - half];
+        System.arraycopy(children, 0, left, 0, half);
+        System.arraycopy(children, half, right, 0, right.length);
+        return new Node[] {newInner(left), newInner(right)};
+    }
+
+    /**
+     * Returns the copy of node without the element at index. A child left with few
+     * elements or children is merged with a neighbour if they fit in one node, and an
+     * empty child is dropped.
+     */
+    private static Node remove(Node node, int index) {
+        if (node.mChildren == null) {
+            Object[] elements = new Object[node.mElements.length - 1];
+            System.arraycopy(node.mElements, 0, elements, 0, index);
+            System.arraycopy(node.mElements, index + 1, elements, index,
+                    elements.length - index);
+            return newLeaf(elements);
+        }
+
+        int i = 0;
+        while (index >= node.mChildren[i].mSize) {
+            index -= node.mChildren[i].mSize;
+            i++;
+        }
+        Node child = remove(node.mChildren[i], index);
+
+        if (child.mSize == 0) {
+            Node[] children = new Node[node.mChildren.length - 1];
+            System.arraycopy(node.mChildren, 0, children, 0, i);
+            System.arraycopy(node.mChildren, i + 1, children, i, children.length - i);
+            return children.length == 0 ? EMPTY_LEAF : newInner(children);
+        }
+
+        Node[] children = node.mChildren.clone();
+        children[i] = child;
+        if (child.width() < MIN_CHUNK_SIZE && children.length > 1) {
+            int left = i > 0 ? i - 1 : i;
+            if (children[left].width() + children[left + 1].width() <= CHUNK_SIZE) {
+                Node[] merged = new Node[children.length - 1];
+                System.arraycopy(children, 0, merged, 0, left);
+                merged[left] = merge(children[left], children[left + 1]);
+                System.arraycopy(children, left + 2, merged, left + 1,
+                        children.length - left - 2);
+                children = merged;
+            }
+        }
+        return newInner(children);
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left.mChildren == null) {
+            Object[] elements = new Object[left.mElements.length + right.mElements.length];
+            System.arraycopy(left.mElements, 0, elements, 0, left.mElements.length);
+            System.arraycopy(right.mElements, 0, elements, left.mElements.length,
+                    right.mElements.length);
+            return newLeaf(elements);
+        }
+        Node[] children = new Node[left.mChildren.length + right.mChildren.length];
+        System.arraycopy(left.mChildren, 0, children, 0, left.mChildren.length);
+        System.arraycopy(right.mChildren, 0, children, left.mChildren.length,
+                right.mChildren.length);
+        return newInner(children);
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}